@@ -0,0 +1,597 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * A dictionary giving each applicant a compact integer id, so that queues can refer to applicants
+ * without holding their name and email. Applicants are identified by their email: interning an
+ * email which is already known returns its existing id. Ids are assigned in increasing order from
+ * 0, and are never reused: a dictionary never forgets an applicant, but retain() builds a smaller
+ * copy of it holding only some of them.
+ *
+ * Names and emails are not kept as Strings. The name and the local part of the email of each
+ * applicant are stored one after the other as Latin-1 bytes in a single growing arena, and the
+ * domains of the emails are interned, so that the applicants of a domain share one copy of it.
+ * Emails are looked up in an open-addressing table of ids, by comparing their chars with the
+ * arena, so interning a known email allocates nothing. The few applicants whose name or email
+ * does not fit in Latin-1 are kept as Strings.
+ *
+ * The Applications handed out by application() are flyweights, which only hold an applicant id
+ * and a score, and decode their name and email from the arena the first time they are asked for
+ * them. The decoded Strings are kept by the flyweight, so that comparing flyweights by name or
+ * email, or hashing their emails, only decodes each of them once.
+ */
+public class ApplicantDictionary {
+  private static final int INITIAL_LENGTH = 16; // length of the arrays when created
+
+  private byte[] arena; // names and local parts of the emails of the applicants, in Latin-1
+  private int arenaLength; // number of bytes used in the arena
+  private int[] offsets; // offsets[id] is the index in the arena of the name of this applicant
+  private int[] nameLengths; // nameLengths[id] is the length of the name of this applicant
+  private int[] localLengths; // length of the local part of the email, -1 if kept as Strings
+  private int[] domainIds; // domainIds[id] is the id of the domain of the email of this applicant
+  private int[] hashes; // hashes[id] is the hash code of the email of this applicant
+  private int[] ids; // open-addressing table of the applicants by email, holding id + 1
+  private HashMap<Integer, String[]> wide; // name and email of the applicants not in the arena
+  private int size; // number of applicants in this dictionary
+
+  private String[] domains; // domains[d] is the domain with id d
+  private byte[][] domainBytes; // domainBytes[d] is the domain with id d, in Latin-1
+  private int[] domainSlots; // open-addressing table of the domains, holding domain id + 1
+  private int domainCount; // number of distinct domains
+
+  /**
+   * An Application handed out by a dictionary, which holds an applicant id and a score, and its
+   * name and email once they were decoded
+   */
+  private static final class Applicant extends Application {
+    private final ApplicantDictionary dictionary; // the dictionary holding this applicant
+    private final int id; // the id of this applicant in the dictionary
+    private String name; // the name of this applicant, null until it is decoded
+    private String email; // the email of this applicant, null until it is decoded
+
+    private Applicant(ApplicantDictionary dictionary, int id, int score) {
+      super(score);
+      this.dictionary = dictionary;
+      this.id = id;
+    }
+
+    @Override
+    public String getName() {
+      if (name == null) {
+        name = dictionary.getName(id);
+      }
+      return name;
+    }
+
+    @Override
+    public String getEmail() {
+      if (email == null) {
+        email = dictionary.getEmail(id);
+      }
+      return email;
+    }
+  }
+
+  /**
+   * Creates a new empty ApplicantDictionary
+   */
+  public ApplicantDictionary() {
+    arena = new byte[INITIAL_LENGTH * 16];
+    offsets = new int[INITIAL_LENGTH];
+    nameLengths = new int[INITIAL_LENGTH];
+    localLengths = new int[INITIAL_LENGTH];
+    domainIds = new int[INITIAL_LENGTH];
+    hashes = new int[INITIAL_LENGTH];
+    ids = new int[INITIAL_LENGTH * 2];
+    size = 0;
+    domains = new String[INITIAL_LENGTH];
+    domainBytes = new byte[INITIAL_LENGTH][];
+    domainSlots = new int[INITIAL_LENGTH * 2];
+    domainCount = 0;
+  }
+
+  /**
+   * Returns the id of the applicant with the given name and email, adding the applicant to this
+   * dictionary if their email is not known yet. If it is, but with another name, e.g. because the
+   * applicant corrected it, the given name replaces the recorded one. The flyweights which already
+   * decoded the previous name keep it.
+   *
+   * @param name  name of the applicant
+   * @param email email of the applicant
+   * @return the id of the applicant
+   * @throws NullPointerException     if the name or the email is null
+   * @throws IllegalArgumentException with a descriptive error message if the email does not have
+   *                                  a single {@literal @}
+   */
+  public int intern(String name, String email)
+      throws NullPointerException, IllegalArgumentException {
+    if (name == null || email == null) {
+      throw new NullPointerException("name or email is null");
+    }
+    int hash = email.hashCode();
+    int slot = slotOf(email, hash);
+    if (ids[slot] != 0) {
+      int id = ids[slot] - 1;
+      if (!hasName(id, name)) {
+        rename(id, name);
+      }
+      return id;
+    }
+    int at = Application.atIndex(email);
+    if (at < 0) {
+      throw new IllegalArgumentException("invalid email");
+    }
+    if (size == offsets.length) {
+      grow();
+    }
+    int id = size;
+    hashes[id] = hash;
+    if (isLatin1(name) && isLatin1(email)) {
+      offsets[id] = store(name, 0, name.length());
+      store(email, 0, at);
+      nameLengths[id] = name.length();
+      localLengths[id] = at;
+      domainIds[id] = internDomain(email, at + 1);
+    } else {
+      if (wide == null) {
+        wide = new HashMap<Integer, String[]>();
+      }
+      wide.put(id, new String[] {name, email});
+      localLengths[id] = -1;
+      domainIds[id] = -1;
+    }
+    ids[slot] = id + 1;
+    size++;
+    if (size * 2 > ids.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  /**
+   * Returns the id of the applicant with the given email, without adding it to this dictionary
+   *
+   * @param email email of the applicant
+   * @return the id of the applicant, or -1 if their email is not known
+   */
+  public int find(String email) {
+    if (email == null) {
+      return -1;
+    }
+    return ids[slotOf(email, email.hashCode())] - 1;
+  }
+
+  /**
+   * Returns a flyweight Application of the applicant with the given id and the given score
+   *
+   * @param id    id of the applicant
+   * @param score score of the Application (must be in the range 0 .. 100)
+   * @return an Application which decodes its name and email from this dictionary
+   * @throws NoSuchElementException   if no applicant has this id
+   * @throws IllegalArgumentException with a descriptive error message if the score is not in the
+   *                                  0 .. 100 range
+   */
+  public Application application(int id, int score)
+      throws NoSuchElementException, IllegalArgumentException {
+    check(id);
+    return new Applicant(this, id, score);
+  }
+
+  /**
+   * Returns a flyweight Application with the given information, adding its applicant to this
+   * dictionary if their email is not known yet. The checks are the same as the ones of the
+   * Application constructor.
+   *
+   * @param name  name of the applicant
+   * @param email email of the applicant
+   * @param score score of the Application (must be in the range 0 .. 100)
+   * @return an Application which decodes its name and email from this dictionary
+   * @throws IllegalArgumentException with a descriptive error message if the name is null or
+   *                                  blank, the email is null or does not have a single
+   *                                  {@literal @}, or the score is not in the 0 .. 100 range
+   */
+  public Application application(String name, String email, int score)
+      throws IllegalArgumentException {
+    if (name == null || name.length() == 0) {
+      throw new IllegalArgumentException("invalid name");
+    }
+    if (email == null) {
+      throw new IllegalArgumentException("invalid email");
+    }
+    if (score < 0 || score > Application.MAX_SCORE) {
+      throw new IllegalArgumentException("invalid score");
+    }
+    return new Applicant(this, intern(name, email), score);
+  }
+
+  /**
+   * Returns the id of the applicant of the given Application, adding the applicant to this
+   * dictionary if needed. The id of a flyweight of this dictionary is returned as is.
+   *
+   * @param application the Application to intern
+   * @return the id of its applicant
+   */
+  int intern(Application application) {
+    if (application instanceof Applicant && ((Applicant) application).dictionary == this) {
+      return ((Applicant) application).id;
+    }
+    return intern(application.getName(), application.getEmail());
+  }
+
+  /**
+   * Returns the id of the applicant of the given Application, without adding it to this
+   * dictionary
+   *
+   * @param application the Application to look up
+   * @return the id of its applicant, or -1 if their email is not known
+   */
+  int find(Application application) {
+    if (application instanceof Applicant && ((Applicant) application).dictionary == this) {
+      return ((Applicant) application).id;
+    }
+    return find(application.getEmail());
+  }
+
+  /**
+   * Returns a new dictionary holding only the applicants with the given ids, e.g. the ones still
+   * held by a queue. They get new ids in the same order, so that applicants ordered by id keep
+   * their order. Their bytes are copied as they are, without decoding them. This dictionary is
+   * not modified, so the flyweights it handed out stay valid.
+   *
+   * @param kept  ids of the applicants to keep, in increasing order and without duplicates: the
+   *              new id of the applicant kept[i] is i
+   * @param count number of ids in kept
+   * @return the new dictionary
+   */
+  ApplicantDictionary retain(int[] kept, int count) {
+    ApplicantDictionary retained = new ApplicantDictionary();
+    for (int i = 0; i < count; i++) {
+      int id = kept[i];
+      if (localLengths[id] < 0) {
+        retained.intern(wide.get(id)[0], wide.get(id)[1]);
+        continue;
+      }
+      if (retained.size == retained.offsets.length) {
+        retained.grow();
+      }
+      int length = nameLengths[id] + localLengths[id];
+      retained.offsets[i] = retained.reserve(length);
+      System.arraycopy(arena, offsets[id], retained.arena, retained.offsets[i], length);
+      retained.nameLengths[i] = nameLengths[id];
+      retained.localLengths[i] = localLengths[id];
+      retained.domainIds[i] = retained.internDomain(domains[domainIds[id]], 0);
+      retained.hashes[i] = hashes[id];
+      link(retained.ids, retained.hashes, i);
+      retained.size++;
+      if (retained.size * 2 > retained.ids.length) {
+        retained.rehash();
+      }
+    }
+    return retained;
+  }
+
+  /**
+   * Returns the name of the applicant with the given id
+   *
+   * @param id id of the applicant
+   * @return the name of the applicant
+   * @throws NoSuchElementException if no applicant has this id
+   */
+  public String getName(int id) throws NoSuchElementException {
+    check(id);
+    if (localLengths[id] < 0) {
+      return wide.get(id)[0];
+    }
+    return new String(arena, offsets[id], nameLengths[id], StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Returns the email of the applicant with the given id
+   *
+   * @param id id of the applicant
+   * @return the email of the applicant
+   * @throws NoSuchElementException if no applicant has this id
+   */
+  public String getEmail(int id) throws NoSuchElementException {
+    check(id);
+    int local = localLengths[id];
+    if (local < 0) {
+      return wide.get(id)[1];
+    }
+    byte[] domain = domainBytes[domainIds[id]];
+    byte[] email = new byte[local + 1 + domain.length];
+    System.arraycopy(arena, offsets[id] + nameLengths[id], email, 0, local);
+    email[local] = '@';
+    System.arraycopy(domain, 0, email, local + 1, domain.length);
+    return new String(email, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Returns the domain of the email of the applicant with the given id, i.e. the part after its
+   * {@literal @}. Applicants with the same domain get the same String.
+   *
+   * @param id id of the applicant
+   * @return the domain of the email of the applicant
+   * @throws NoSuchElementException if no applicant has this id
+   */
+  public String getDomain(int id) throws NoSuchElementException {
+    check(id);
+    if (localLengths[id] < 0) {
+      String email = wide.get(id)[1];
+      return email.substring(Application.atIndex(email) + 1);
+    }
+    return domains[domainIds[id]];
+  }
+
+  /**
+   * Returns the number of applicants in this dictionary
+   *
+   * @return the number of applicants in this dictionary
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of distinct domains among the emails of the applicants of this dictionary
+   *
+   * @return the number of interned domains
+   */
+  public int getDomainCount() {
+    return domainCount;
+  }
+
+  /**
+   * Checks that an applicant has the given id
+   *
+   * @param id id to check
+   * @throws NoSuchElementException if no applicant has this id
+   */
+  private void check(int id) throws NoSuchElementException {
+    if (id < 0 || id >= size) {
+      throw new NoSuchElementException("unknown applicant");
+    }
+  }
+
+  /**
+   * Returns the slot of the given email in the table of ids, or the empty slot where it would be
+   * inserted
+   *
+   * @param email the email to look up
+   * @param hash  its hash code
+   * @return the index of its slot
+   */
+  private int slotOf(String email, int hash) {
+    int mask = ids.length - 1;
+    int i = spread(hash) & mask;
+    while (ids[i] != 0 && !(hashes[ids[i] - 1] == hash && matches(ids[i] - 1, email))) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  /**
+   * Checks whether the applicant with the given id has the given email, without decoding it
+   *
+   * @param id    id of the applicant
+   * @param email the email to compare
+   * @return {@code true} if the applicant has this email
+   */
+  private boolean matches(int id, String email) {
+    int local = localLengths[id];
+    if (local < 0) {
+      return wide.get(id)[1].equals(email);
+    }
+    String domain = domains[domainIds[id]];
+    if (email.length() != local + 1 + domain.length() || email.charAt(local) != '@') {
+      return false;
+    }
+    int offset = offsets[id] + nameLengths[id];
+    for (int i = 0; i < local; i++) {
+      if (email.charAt(i) != (char) (arena[offset + i] & 0xFF)) {
+        return false;
+      }
+    }
+    return email.startsWith(domain, local + 1);
+  }
+
+  /**
+   * Checks whether the applicant with the given id has the given name, without decoding it
+   *
+   * @param id   id of the applicant
+   * @param name the name to compare
+   * @return {@code true} if the applicant has this name
+   */
+  private boolean hasName(int id, String name) {
+    if (localLengths[id] < 0) {
+      return wide.get(id)[0].equals(name);
+    }
+    if (name.length() != nameLengths[id]) {
+      return false;
+    }
+    int offset = offsets[id];
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != (char) (arena[offset + i] & 0xFF)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Replaces the name of the applicant with the given id. In the arena, the new name and a copy of
+   * the local part of the email are appended, and the previous bytes are left unused.
+   *
+   * @param id   id of the applicant
+   * @param name the new name of the applicant
+   */
+  private void rename(int id, String name) {
+    int local = localLengths[id];
+    if (local >= 0 && isLatin1(name)) {
+      int start = store(name, 0, name.length());
+      int copy = reserve(local);
+      System.arraycopy(arena, offsets[id] + nameLengths[id], arena, copy, local);
+      offsets[id] = start;
+      nameLengths[id] = name.length();
+      return;
+    }
+    String email = getEmail(id);
+    if (wide == null) {
+      wide = new HashMap<Integer, String[]>();
+    }
+    wide.put(id, new String[] {name, email});
+    localLengths[id] = -1;
+    domainIds[id] = -1;
+  }
+
+  /**
+   * Returns the id of the domain starting at the given index of the given email, interning it if
+   * it is not known yet
+   *
+   * @param email an email in Latin-1
+   * @param from  index of the first char of its domain
+   * @return the id of the domain
+   */
+  private int internDomain(String email, int from) {
+    int hash = 0; // same as the hash code of the domain String
+    for (int i = from; i < email.length(); i++) {
+      hash = 31 * hash + email.charAt(i);
+    }
+    int length = email.length() - from;
+    int mask = domainSlots.length - 1;
+    int i = spread(hash) & mask;
+    for (; domainSlots[i] != 0; i = (i + 1) & mask) {
+      String domain = domains[domainSlots[i] - 1];
+      if (domain.length() == length && email.startsWith(domain, from)) {
+        return domainSlots[i] - 1;
+      }
+    }
+    if (domainCount == domains.length) {
+      domains = Arrays.copyOf(domains, domainCount * 2);
+      domainBytes = Arrays.copyOf(domainBytes, domainCount * 2);
+    }
+    String domain = email.substring(from);
+    domains[domainCount] = domain;
+    domainBytes[domainCount] = domain.getBytes(StandardCharsets.ISO_8859_1);
+    domainSlots[i] = ++domainCount;
+    if (domainCount * 2 > domainSlots.length) {
+      int[] slots = new int[domainSlots.length * 2];
+      for (int d = 0; d < domainCount; d++) {
+        int j = spread(domains[d].hashCode()) & (slots.length - 1);
+        while (slots[j] != 0) {
+          j = (j + 1) & (slots.length - 1);
+        }
+        slots[j] = d + 1;
+      }
+      domainSlots = slots;
+    }
+    return domainCount - 1;
+  }
+
+  /**
+   * Appends the chars from index from (inclusive) to index to (exclusive) of the given Latin-1
+   * String to the arena, one byte each
+   *
+   * @param s    the String to store
+   * @param from index of the first char to store
+   * @param to   index after the last char to store
+   * @return the index in the arena of the first stored byte
+   * @throws IllegalStateException with a descriptive error message if the arena is full
+   */
+  private int store(String s, int from, int to) throws IllegalStateException {
+    int start = reserve(to - from);
+    for (int i = from; i < to; i++) {
+      arena[start + i - from] = (byte) s.charAt(i);
+    }
+    return start;
+  }
+
+  /**
+   * Reserves the given number of bytes at the end of the arena, growing it if needed
+   *
+   * @param length number of bytes to reserve
+   * @return the index in the arena of the first reserved byte
+   * @throws IllegalStateException with a descriptive error message if the arena is full
+   */
+  private int reserve(int length) throws IllegalStateException {
+    if (arenaLength + length > arena.length) {
+      long needed = (long) arenaLength + length;
+      if (needed > Integer.MAX_VALUE - 8) {
+        throw new IllegalStateException("dictionary is full");
+      }
+      long grown = Math.max((long) arena.length * 2, needed);
+      arena = Arrays.copyOf(arena, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+    }
+    int start = arenaLength;
+    arenaLength += length;
+    return start;
+  }
+
+  /**
+   * Doubles the length of the arrays indexed by applicant id
+   */
+  private void grow() {
+    offsets = Arrays.copyOf(offsets, size * 2);
+    nameLengths = Arrays.copyOf(nameLengths, size * 2);
+    localLengths = Arrays.copyOf(localLengths, size * 2);
+    domainIds = Arrays.copyOf(domainIds, size * 2);
+    hashes = Arrays.copyOf(hashes, size * 2);
+  }
+
+  /**
+   * Doubles the length of the table of ids, and inserts every applicant again
+   */
+  private void rehash() {
+    int[] table = new int[ids.length * 2];
+    for (int id = 0; id < size; id++) {
+      link(table, hashes, id);
+    }
+    ids = table;
+  }
+
+  /**
+   * Stores the given id in the first free slot for its hash code in the given table of ids. The
+   * table must not hold an applicant with the same email.
+   *
+   * @param table  an open-addressing table of ids, holding id + 1
+   * @param hashes hash codes of the emails of the applicants, by id
+   * @param id     id of the applicant to store
+   */
+  private static void link(int[] table, int[] hashes, int id) {
+    int mask = table.length - 1;
+    int i = spread(hashes[id]) & mask;
+    while (table[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    table[i] = id + 1;
+  }
+
+  /**
+   * Checks whether every char of the given String fits in a single Latin-1 byte
+   *
+   * @param s the String to check
+   * @return {@code true} if the String can be stored in the arena
+   */
+  private static boolean isLatin1(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) > 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Spreads the bits of the given hash code, so that the low bits used as a slot depend on all of
+   * them
+   *
+   * @param hash a hash code
+   * @return the spread hash
+   */
+  private static int spread(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -19,6 +19,8 @@
  * This class models a application with a name and due date
  */
 public class Application implements Comparable<Application>{
+    public static final int MAX_SCORE = 100; // highest score an applicant can have
+
     private final String name;  // name of this applicant
     private final String email; // email of this applicant
     private final int score;    // estimated score of this applicant
@@ -39,11 +41,11 @@ public class Application implements Comparable<Application>{
           throw new IllegalArgumentException("invalid name");
         }
         // ... or if the provided email is null, or has no or multiple @
-        if(email == null || email.indexOf("@") < 0 || email.indexOf("@") != email.lastIndexOf("@")){
+        if(email == null || atIndex(email) < 0){
           throw new IllegalArgumentException("invalid email");
         }
         // ... or if the provided score is not in the 0 .. 100 range
-        if(score < 0 || score > 100){
+        if(score < 0 || score > MAX_SCORE){
           throw new IllegalArgumentException("invalid score");
         }
         
@@ -53,6 +55,42 @@ public class Application implements Comparable<Application>{
 
     }
 
+    /**
+     * Creates a new Application whose name and email are provided by a subclass, which must
+     * override getName() and getEmail(). Used by flyweight Applications which do not hold their
+     * own Strings, such as those of an ApplicantDictionary.
+     *
+     * @param score      estimated score of this applicant (must be in the range 0 .. 100)
+     * @throws IllegalArgumentException if score is not in the 0 .. 100 range
+     */
+    protected Application(int score) throws IllegalArgumentException{
+        if(score < 0 || score > MAX_SCORE){
+          throw new IllegalArgumentException("invalid score");
+        }
+      this.name = null;
+      this.email = null;
+      this.score = score;
+    }
+
+    /**
+     * Returns the index of the single {@literal @} of the given email, in a single pass over it
+     * 
+     * @param email the email to check
+     * @return the index of its {@literal @}, or -1 if it has no or multiple {@literal @}
+     */
+    static int atIndex(String email) {
+        int at = -1;
+        for(int i = 0; i < email.length(); i++){
+          if(email.charAt(i) == '@'){
+            if(at >= 0){
+              return -1;
+            }
+            at = i;
+          }
+        }
+        return at;
+    }
+
     /**
      * Returns the name of this Applicant
      * 
@@ -110,6 +148,6 @@ public class Application implements Comparable<Application>{
      */
     @Override
     public String toString() {
-        return name + ":" + email + ":" + score;
+        return getName() + ":" + getEmail() + ":" + score;
     }
 }
@@ -1,48 +1,145 @@
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
- * Implements an iterator for Applications, which returns the Applications in order from earliest to
- * latest based on their order in a priority queue.
+ * Implements an iterator for Applications, which returns the Applications in order from the
+ * lowest-scored to the highest-scored based on their order in a priority queue.
+ *
+ * The iterator walks the live heap of the queue without copying or modifying it. It keeps a small
+ * frontier of heap indices, itself organized as a min-heap: the next Application is always at the
+ * root of the frontier, and once it is returned its children in the queue join the frontier. The
+ * iterator fails fast with a ConcurrentModificationException if the queue is modified while
+ * iterating.
  */
 public class ApplicationIterator implements Iterator<Application> {
-  private ApplicationQueue queue; // a copy of the priority queue of applications to iterate over
+  private static final int INITIAL_FRONTIER_LENGTH = 16; // length of the frontier when created
+
+  private ApplicationQueue queue; // the priority queue of applications to iterate over
+  private int expectedModCount; // modification count of the queue when this iterator was created
+  private int[] frontier; // min-heap of the indices in queue that are next candidates
+  private int frontierSize; // number of indices in the frontier
 
   /**
    * Creates a new ApplicationIterator which iterates over the elements of the given
    * ApplicationQueue in order from lowest-scored application to the highest-scored application.
-   * 
+   * Applications removed by removeIf() but still in the heap are dropped first, so that every
+   * slot the iterator walks is live.
+   *
    * @param queue the ApplicationQueue to iterate over
    */
   public ApplicationIterator(ApplicationQueue queue) {
-    this.queue = queue.deepCopy(); // we are going to work on a deep copy of the provided queue
-                                   // as input parameter.
+    queue.compact();
+    this.queue = queue;
+    this.expectedModCount = queue.modCount();
+    frontier = new int[Math.min(INITIAL_FRONTIER_LENGTH, leaves())];
+    if (queue.size() > 0) {
+      frontier[0] = 0;
+      frontierSize = 1;
+    }
   }
 
   /**
    * Returns true if the iteration has more elements.
-   * 
+   *
    * @return {@code true} if the iteration has more elements
    */
   @Override
   public boolean hasNext() {
-    if (queue.size() > 0) {
-      return true;
-    }
-    return false;
+    return frontierSize > 0;
   }
 
   /**
    * Returns the next element in the iteration.
-   * 
+   *
    * @return the next element in the iteration.
-   * @throws NoSuchElementException with a descriptive error message if the iteration has no more
-   *                                elements
+   * @throws NoSuchElementException          with a descriptive error message if the iteration
+   *                                         has no more elements
+   * @throws ConcurrentModificationException if the queue was modified since this iterator was
+   *                                         created
    */
   @Override
   public Application next() {
+    if (queue.modCount() != expectedModCount) {
+      throw new ConcurrentModificationException("queue modified during iteration");
+    }
     if (!hasNext())
       throw new NoSuchElementException("No more elements in this iteration");
-    return queue.dequeue();
+
+    // pop the root of the frontier
+    int index = frontier[0];
+    frontierSize--;
+    if (frontierSize > 0) {
+      frontier[0] = frontier[frontierSize];
+      siftDown();
+    }
+
+    // its children in the queue are now candidates
+    long first = (long) index * queue.getArity() + 1;
+    long last = Math.min(first + queue.getArity(), queue.size());
+    for (long child = first; child < last; child++) {
+      push((int) child);
+    }
+    return queue.elementAt(index);
+  }
+
+  /**
+   * Adds the given heap index to the frontier.
+   *
+   * @param index index in the queue to add
+   */
+  private void push(int index) {
+    if (frontierSize == frontier.length) {
+      int[] grown = new int[Math.min(frontier.length * 2, leaves())];
+      System.arraycopy(frontier, 0, grown, 0, frontierSize);
+      frontier = grown;
+    }
+    int curr = frontierSize++;
+    while (curr > 0 && less(index, frontier[(curr - 1) / 2])) {
+      frontier[curr] = frontier[(curr - 1) / 2];
+      curr = (curr - 1) / 2;
+    }
+    frontier[curr] = index;
+  }
+
+  /**
+   * Restores the min-heap invariant of the frontier after its root was replaced.
+   */
+  private void siftDown() {
+    int index = frontier[0];
+    int curr = 0;
+    int child;
+    while ((child = curr * 2 + 1) < frontierSize) {
+      if (child + 1 < frontierSize && less(frontier[child + 1], frontier[child])) {
+        child++;
+      }
+      if (!less(frontier[child], index)) {
+        break;
+      }
+      frontier[curr] = frontier[child];
+      curr = child;
+    }
+    frontier[curr] = index;
+  }
+
+  /**
+   * Returns the number of leaves of the heap of the queue. The frontier holds roots of disjoint
+   * subtrees, each holding at least one leaf of the heap, so it never grows beyond this number.
+   *
+   * @return the number of leaves of the heap
+   */
+  private int leaves() {
+    int size = queue.size();
+    int internal = (int) (((long) size + queue.getArity() - 2) / queue.getArity());
+    return size - internal;
+  }
+
+  /**
+   * Checks whether the Application at heap index i comes before the one at index j in the queue.
+   *
+   * @return {@code true} if the Application at index i should be returned before the one at j
+   */
+  private boolean less(int i, int j) {
+    return queue.compareAt(i, j) < 0;
   }
 }
@@ -0,0 +1,470 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the Applications of a large UTF-8 file into an OpenPosition. The file is memory-mapped,
+ * one window of up to 1 GiB at a time, and each row is parsed straight from the mapped bytes.
+ *
+ * Two formats are supported, with one Application per line:
+ * <ul>
+ * <li>CSV: {@code name,email,score}, without quoting. A first line whose score is not a number is
+ * taken as a header and skipped.</li>
+ * <li>NDJSON: {@code {"name": "...", "email": "...", "score": 42}}, in any key order. Other keys
+ * are ignored.</li>
+ * </ul>
+ *
+ * The score of a row is parsed first, and compared with the cut-off score of the position: the
+ * name and email of a row which cannot be added are never turned into Strings. The checks of the
+ * Application constructor are done on the raw bytes too, so that invalid rows are also rejected
+ * without allocating anything; rows with JSON escape sequences are checked once decoded. Invalid
+ * rows are counted as rejected.
+ */
+public class ApplicationLoader {
+  private static final int WINDOW = 1 << 30; // largest part of the file mapped at once
+
+  /**
+   * The formats of application files
+   */
+  public enum Format {
+    CSV, NDJSON
+  }
+
+  private final OpenPosition position; // the position the applications are added to
+  private final Format format; // the format of the file
+  private MappedByteBuffer buffer; // the mapped window of the file
+  private byte[] scratch = new byte[256]; // bytes of a name or email being turned into a String
+  private long accepted; // number of applications added to the position
+  private long rejected; // number of rows not added to the position
+  private long evicted; // number of applications evicted from the position
+  private boolean header; // whether the current row is the first one of the file
+
+  // fields of the current row, as offsets in the mapped window
+  private int nameStart;
+  private int nameEnd;
+  private int emailStart;
+  private int emailEnd;
+  private boolean escaped; // whether the name or email holds JSON escape sequences
+  private int score;
+
+  /**
+   * Creates a new ApplicationLoader adding the rows of a file in the given format to the given
+   * position
+   *
+   * @param position the position the applications are added to
+   * @param format   the format of the file
+   */
+  private ApplicationLoader(OpenPosition position, Format format) {
+    this.position = position;
+    this.format = format;
+  }
+
+  /**
+   * Adds the Applications of the given file to the given position. The format of the file is
+   * NDJSON if its name ends with .ndjson or .jsonl, and CSV otherwise.
+   *
+   * @param file     the file to read
+   * @param position the position to add the Applications to
+   * @return how many rows were accepted and rejected, and how many Applications were evicted from
+   *         the position
+   * @throws IOException          if the file cannot be read, or if one of its lines is longer
+   *                              than 1 GiB
+   * @throws NullPointerException if the file or the position is null
+   */
+  public static IntakeResult load(Path file, OpenPosition position)
+      throws IOException, NullPointerException {
+    String name = file.getFileName().toString();
+    boolean json = name.endsWith(".ndjson") || name.endsWith(".jsonl");
+    return load(file, json ? Format.NDJSON : Format.CSV, position);
+  }
+
+  /**
+   * Adds the Applications of the given file, in the given format, to the given position.
+   *
+   * @param file     the file to read
+   * @param format   the format of the file
+   * @param position the position to add the Applications to
+   * @return how many rows were accepted and rejected, and how many Applications were evicted from
+   *         the position
+   * @throws IOException          if the file cannot be read, or if one of its lines is longer
+   *                              than 1 GiB
+   * @throws NullPointerException if the file, the format or the position is null
+   */
+  public static IntakeResult load(Path file, Format format, OpenPosition position)
+      throws IOException, NullPointerException {
+    if (format == null || position == null) {
+      throw new NullPointerException("format or position is null");
+    }
+    ApplicationLoader loader = new ApplicationLoader(position, format);
+    loader.read(file);
+    return new IntakeResult(loader.accepted, loader.rejected, loader.evicted);
+  }
+
+  /**
+   * Maps the given file window by window, and handles each of its lines
+   *
+   * @param file the file to read
+   * @throws IOException if the file cannot be read, or if one of its lines is longer than 1 GiB
+   */
+  private void read(Path file) throws IOException {
+    header = true;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long offset = 0;
+      while (offset < size) {
+        int limit = (int) Math.min(WINDOW, size - offset);
+        boolean last = offset + limit == size;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, limit);
+        int lineStart = 0;
+        while (lineStart < limit) {
+          int lineEnd = indexOf((byte) '\n', lineStart, limit);
+          if (lineEnd < 0) {
+            if (!last) {
+              break; // the line continues in the next window
+            }
+            lineEnd = limit;
+          }
+          row(lineStart, lineEnd);
+          lineStart = lineEnd + 1;
+        }
+        if (lineStart == 0) {
+          throw new IOException("line too long");
+        }
+        offset += Math.min(lineStart, limit);
+      }
+    } finally {
+      buffer = null;
+    }
+  }
+
+  /**
+   * Handles the line between the given offsets of the mapped window
+   *
+   * @param start offset of the first byte of the line
+   * @param end   offset after the last byte of the line, excluding the line feed
+   */
+  private void row(int start, int end) {
+    if (end > start && buffer.get(end - 1) == '\r') {
+      end--;
+    }
+    if (end == start) {
+      return; // blank lines are ignored
+    }
+    boolean first = header;
+    header = false;
+    boolean parsed = format == Format.CSV ? parseCsv(start, end) : parseJson(start, end);
+    if (!parsed) {
+      if (!(first && format == Format.CSV)) {
+        rejected++;
+      }
+      return;
+    }
+    // escape sequences may hide or add an @, so such emails are only checked once decoded
+    if (!position.mayAccept(score) || nameEnd == nameStart
+        || !(escaped || singleAt(emailStart, emailEnd))) {
+      rejected++;
+      return;
+    }
+
+    boolean full = position.isFull();
+    Application application;
+    try {
+      application = new Application(string(nameStart, nameEnd), string(emailStart, emailEnd),
+          score);
+    } catch (IllegalArgumentException e) {
+      rejected++; // an invalid escape sequence, or a decoded email without a single @
+      return;
+    }
+    if (position.add(application)) {
+      accepted++;
+      if (full) {
+        evicted++;
+      }
+    } else {
+      rejected++;
+    }
+  }
+
+  /**
+   * Finds the fields of a CSV line
+   *
+   * @param start offset of the first byte of the line
+   * @param end   offset after the last byte of the line
+   * @return {@code true} if the line has three fields and a valid score
+   */
+  private boolean parseCsv(int start, int end) {
+    int comma = indexOf((byte) ',', start, end);
+    if (comma < 0) {
+      return false;
+    }
+    int secondComma = indexOf((byte) ',', comma + 1, end);
+    if (secondComma < 0) {
+      return false;
+    }
+    nameStart = start;
+    nameEnd = comma;
+    emailStart = comma + 1;
+    emailEnd = secondComma;
+    escaped = false;
+    return parseScore(secondComma + 1, end);
+  }
+
+  /**
+   * Finds the fields of an NDJSON line. The line must hold a single flat object.
+   *
+   * @param start offset of the first byte of the line
+   * @param end   offset after the last byte of the line
+   * @return {@code true} if the line has a name, an email and a valid score
+   */
+  private boolean parseJson(int start, int end) {
+    nameStart = -1;
+    emailStart = -1;
+    escaped = false;
+    boolean scored = false;
+    int i = skipSpaces(start, end);
+    if (i == end || buffer.get(i) != '{') {
+      return false;
+    }
+    i = skipSpaces(i + 1, end);
+    while (i < end && buffer.get(i) == '"') {
+      int keyEnd = stringEnd(i + 1, end);
+      if (keyEnd < 0) {
+        return false;
+      }
+      int keyStart = i + 1;
+      i = skipSpaces(keyEnd + 1, end);
+      if (i == end || buffer.get(i) != ':') {
+        return false;
+      }
+      i = skipSpaces(i + 1, end);
+      int valueStart = i;
+      int valueEnd;
+      if (i < end && buffer.get(i) == '"') {
+        valueEnd = stringEnd(i + 1, end);
+        if (valueEnd < 0) {
+          return false;
+        }
+        i = valueEnd + 1;
+        valueStart++;
+      } else {
+        while (i < end && buffer.get(i) != ',' && buffer.get(i) != '}') {
+          i++;
+        }
+        valueEnd = i;
+      }
+
+      if (keyIs(keyStart, keyEnd, "name")) {
+        nameStart = valueStart;
+        nameEnd = valueEnd;
+      } else if (keyIs(keyStart, keyEnd, "email")) {
+        emailStart = valueStart;
+        emailEnd = valueEnd;
+      } else if (keyIs(keyStart, keyEnd, "score")) {
+        if (!parseScore(valueStart, valueEnd)) {
+          return false;
+        }
+        scored = true;
+      }
+
+      i = skipSpaces(i, end);
+      if (i < end && buffer.get(i) == ',') {
+        i = skipSpaces(i + 1, end);
+      }
+    }
+    return scored && nameStart >= 0 && emailStart >= 0;
+  }
+
+  /**
+   * Parses the score between the given offsets, ignoring surrounding spaces
+   *
+   * @param start offset of the first byte of the score
+   * @param end   offset after the last byte of the score
+   * @return {@code true} if the bytes hold a valid score
+   */
+  private boolean parseScore(int start, int end) {
+    start = skipSpaces(start, end);
+    while (end > start && (buffer.get(end - 1) == ' ' || buffer.get(end - 1) == '\t')) {
+      end--;
+    }
+    if (start == end) {
+      return false;
+    }
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      int digit = buffer.get(i) - '0';
+      if (digit < 0 || digit > 9 || value > Application.MAX_SCORE) {
+        return false;
+      }
+      value = value * 10 + digit;
+    }
+    if (value > Application.MAX_SCORE) {
+      return false;
+    }
+    score = value;
+    return true;
+  }
+
+  /**
+   * Checks whether the bytes between the given offsets hold exactly one {@literal @}
+   *
+   * @param start offset of the first byte
+   * @param end   offset after the last byte
+   * @return {@code true} if there is exactly one {@literal @}
+   */
+  private boolean singleAt(int start, int end) {
+    int count = 0;
+    for (int i = start; i < end && count < 2; i++) {
+      if (buffer.get(i) == '@') {
+        count++;
+      }
+    }
+    return count == 1;
+  }
+
+  /**
+   * Returns the offset of the closing quote of the JSON string starting at the given offset
+   *
+   * @param start offset of the first byte after the opening quote
+   * @param end   offset after the last byte of the line
+   * @return the offset of the closing quote, or -1 if there is none
+   */
+  private int stringEnd(int start, int end) {
+    for (int i = start; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b == '\\') {
+        escaped = true;
+        i++;
+      } else if (b == '"') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Checks whether the bytes between the given offsets are the given ASCII key
+   *
+   * @param start offset of the first byte
+   * @param end   offset after the last byte
+   * @param key   the expected key
+   * @return {@code true} if the bytes are the given key
+   */
+  private boolean keyIs(int start, int end, String key) {
+    if (end - start != key.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (buffer.get(start + i) != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the offset of the first byte which is not a space or a tab
+   *
+   * @param start offset of the first byte to check
+   * @param end   offset after the last byte to check
+   * @return the offset of the first other byte, or end if there is none
+   */
+  private int skipSpaces(int start, int end) {
+    while (start < end && (buffer.get(start) == ' ' || buffer.get(start) == '\t')) {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * Returns the offset of the first occurrence of the given byte
+   *
+   * @param b     the byte to find
+   * @param start offset of the first byte to check
+   * @param end   offset after the last byte to check
+   * @return the offset of the byte, or -1 if it does not occur
+   */
+  private int indexOf(byte b, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (buffer.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the UTF-8 bytes between the given offsets, and their JSON escape sequences if any
+   *
+   * @param start offset of the first byte
+   * @param end   offset after the last byte
+   * @return the decoded String
+   * @throws IllegalArgumentException with a descriptive error message if an escape sequence is
+   *                                  invalid
+   */
+  private String string(int start, int end) throws IllegalArgumentException {
+    int length = end - start;
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    buffer.get(start, scratch, 0, length);
+    String raw = new String(scratch, 0, length, StandardCharsets.UTF_8);
+    return escaped ? unescape(raw) : raw;
+  }
+
+  /**
+   * Replaces the JSON escape sequences of the given String by the characters they stand for
+   *
+   * @param raw a JSON string, without its quotes
+   * @return the unescaped String
+   * @throws IllegalArgumentException with a descriptive error message if a unicode escape
+   *                                  sequence does not have four hexadecimal digits
+   */
+  private static String unescape(String raw) throws IllegalArgumentException {
+    if (raw.indexOf('\\') < 0) {
+      return raw;
+    }
+    StringBuilder val = new StringBuilder(raw.length());
+    for (int i = 0; i < raw.length(); i++) {
+      char c = raw.charAt(i);
+      if (c != '\\' || i + 1 == raw.length()) {
+        val.append(c);
+        continue;
+      }
+      char next = raw.charAt(++i);
+      switch (next) {
+        case 'b':
+          val.append('\b');
+          break;
+        case 'f':
+          val.append('\f');
+          break;
+        case 'n':
+          val.append('\n');
+          break;
+        case 'r':
+          val.append('\r');
+          break;
+        case 't':
+          val.append('\t');
+          break;
+        case 'u':
+          int code = 0;
+          for (int digit = 0; digit < 4; digit++) {
+            int value = ++i < raw.length() ? Character.digit(raw.charAt(i), 16) : -1;
+            if (value < 0) {
+              throw new IllegalArgumentException("invalid escape sequence");
+            }
+            code = code * 16 + value;
+          }
+          val.append((char) code);
+          break;
+        default:
+          val.append(next); // \" \\ and \/
+      }
+    }
+    return val.toString();
+  }
+}
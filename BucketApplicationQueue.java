@@ -0,0 +1,286 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Counting-bucket implementation of a priority queue containing Applications. Since an Application
+ * score is always in the 0 .. 100 range, this queue keeps one bucket per score and a bitmap of the
+ * non-empty buckets, so that enqueue(), dequeue() and peek() all run in constant time and never
+ * compare two Applications. The root of a non-empty queue is the Application with the lowest score.
+ * Among Applications with the same score, the most recently enqueued one is the first to leave.
+ *
+ * A bucket doubles when it is full, up to the capacity of the queue, and halves when dequeue()
+ * leaves it at most a quarter full, down to a few slots. Each bucket thus stays within four times
+ * the number of Applications it holds, or its initial length, whichever is larger.
+ */
+public class BucketApplicationQueue implements ShortlistQueue {
+  private static final int BUCKETS = Application.MAX_SCORE + 1; // one bucket for each score
+  private static final int INITIAL_BUCKET_LENGTH = 4; // length of a bucket when first used
+
+  private Application[][] buckets; // buckets[s] stacks the applications with score s
+  private int[] counts; // counts[s] is the number of applications in buckets[s]
+  private long[] occupied; // bit s is set when buckets[s] is not empty
+  private int capacity; // capacity of this priority queue
+  private int size; // size of this priority queue
+  private int modCount; // number of structural modifications, used by iterators to fail fast
+
+  /**
+   * Creates a new empty BucketApplicationQueue with the given capacity
+   *
+   * @param capacity Capacity of this BucketApplicationQueue
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   */
+  public BucketApplicationQueue(int capacity) throws IllegalArgumentException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("invalid capacity");
+    }
+    this.capacity = capacity;
+    buckets = new Application[BUCKETS][];
+    counts = new int[BUCKETS];
+    occupied = new long[(BUCKETS + 63) / 64];
+    size = 0;
+  }
+
+  /**
+   * Checks whether this BucketApplicationQueue is empty
+   *
+   * @return {@code true} if this BucketApplicationQueue is empty
+   */
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the size of this BucketApplicationQueue
+   *
+   * @return the size of this BucketApplicationQueue
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the capacity of this BucketApplicationQueue
+   *
+   * @return the maximum number of Applications this BucketApplicationQueue can hold
+   */
+  @Override
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Adds the given Application to the bucket of its score.
+   *
+   * @param o Application to add to this BucketApplicationQueue
+   * @throws NullPointerException  if the given Application is null
+   * @throws IllegalStateException with a descriptive error message if this BucketApplicationQueue
+   *                               is full
+   */
+  @Override
+  public void enqueue(Application o) throws NullPointerException, IllegalStateException {
+    if (o == null) {
+      throw new NullPointerException("application is null");
+    }
+    if (size == capacity) {
+      throw new IllegalStateException("queue is full");
+    }
+    int score = o.getScore();
+    Application[] bucket = buckets[score];
+    if (bucket == null) {
+      bucket = new Application[Math.min(INITIAL_BUCKET_LENGTH, capacity)];
+      buckets[score] = bucket;
+    } else if (counts[score] == bucket.length) {
+      // grow the bucket, but never beyond what the whole queue can hold
+      Application[] grown = new Application[(int) Math.min((long) bucket.length * 2, capacity)];
+      System.arraycopy(bucket, 0, grown, 0, bucket.length);
+      bucket = grown;
+      buckets[score] = bucket;
+    }
+    bucket[counts[score]++] = o;
+    occupied[score >>> 6] |= 1L << score;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Removes and returns the Application at the root of this BucketApplicationQueue, i.e. the
+   * Application with the lowest score.
+   *
+   * @return the Application in this BucketApplicationQueue with the smallest score
+   * @throws NoSuchElementException with a descriptive error message if this
+   *                                BucketApplicationQueue is empty
+   */
+  @Override
+  public Application dequeue() throws NoSuchElementException {
+    if (size == 0) {
+      throw new NoSuchElementException("queue is empty");
+    }
+    int score = lowestScore();
+    Application[] bucket = buckets[score];
+    int top = --counts[score];
+    Application lowest = bucket[top];
+    bucket[top] = null;
+    if (top == 0) {
+      occupied[score >>> 6] &= ~(1L << score);
+    }
+    if (bucket.length > INITIAL_BUCKET_LENGTH && top <= bucket.length / 4) {
+      // halve the bucket, which leaves it half full so that replaceTop() does not grow it back
+      Application[] shrunk = new Application[Math.max(bucket.length / 2, INITIAL_BUCKET_LENGTH)];
+      System.arraycopy(bucket, 0, shrunk, 0, top);
+      buckets[score] = shrunk;
+    }
+    size--;
+    modCount++;
+    return lowest;
+  }
+
+  /**
+   * Returns the Application at the root of this BucketApplicationQueue, i.e. the Application with
+   * the lowest score.
+   *
+   * @return the Application in this BucketApplicationQueue with the smallest score
+   * @throws NoSuchElementException if this BucketApplicationQueue is empty
+   */
+  @Override
+  public Application peek() {
+    if (size == 0) {
+      throw new NoSuchElementException("queue is empty");
+    }
+    int score = lowestScore();
+    return buckets[score][counts[score] - 1];
+  }
+
+  /**
+   * Replaces the Application at the root of this BucketApplicationQueue with the given
+   * Application, and returns the replaced one.
+   *
+   * @param o Application to add to this BucketApplicationQueue
+   * @return the Application which was removed from the root, i.e. the one with the smallest score
+   * @throws NullPointerException   if the given Application is null
+   * @throws NoSuchElementException with a descriptive error message if this
+   *                                BucketApplicationQueue is empty
+   */
+  @Override
+  public Application replaceTop(Application o) throws NullPointerException, NoSuchElementException {
+    if (o == null) {
+      throw new NullPointerException("application is null");
+    }
+    Application lowest = dequeue();
+    enqueue(o);
+    return lowest;
+  }
+
+  /**
+   * Adds the given Application to this BucketApplicationQueue if it is not full, or replaces its
+   * root with the given Application if the root has a lower score.
+   *
+   * @param o Application to add to this BucketApplicationQueue
+   * @return {@code true} if the given Application was added, {@code false} otherwise
+   * @throws NullPointerException if the given Application is null
+   */
+  @Override
+  public boolean offerIfBetter(Application o) throws NullPointerException {
+    if (o == null) {
+      throw new NullPointerException("application is null");
+    }
+    if (size < capacity) {
+      enqueue(o);
+      return true;
+    }
+    if (lowestScore() < o.getScore()) {
+      replaceTop(o);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of slots allocated for the Applications with the given score
+   *
+   * @param score the score of the bucket
+   * @return the length of the bucket, or 0 if it was never used
+   */
+  int bucketLength(int score) {
+    return buckets[score] == null ? 0 : buckets[score].length;
+  }
+
+  /**
+   * Returns the lowest score of a non-empty bucket, using the occupied bitmap.
+   *
+   * @return the lowest score held in this queue, which must not be empty
+   */
+  private int lowestScore() {
+    for (int word = 0; word < occupied.length; word++) {
+      if (occupied[word] != 0) {
+        return (word << 6) + Long.numberOfTrailingZeros(occupied[word]);
+      }
+    }
+    throw new IllegalStateException("no occupied bucket"); // unreachable when size > 0
+  }
+
+  /**
+   * Returns a String representing this BucketApplicationQueue, where each element (application)
+   * of the queue is listed on a separate line, in order from the lowest score to the highest
+   * score.
+   *
+   * @return a String representing this BucketApplicationQueue
+   */
+  @Override
+  public String toString() {
+    StringBuilder val = new StringBuilder();
+
+    for (Application a : this) {
+      val.append(a).append("\n");
+    }
+
+    return val.toString();
+  }
+
+  /**
+   * Returns an Iterator for this BucketApplicationQueue which proceeds from the lowest-scored to
+   * the highest-scored Application, in the same order dequeue() would return them. The iterator
+   * walks the buckets in place and fails fast if the queue is modified while iterating.
+   *
+   * @return an Iterator for this BucketApplicationQueue
+   */
+  @Override
+  public Iterator<Application> iterator() {
+    return new BucketIterator();
+  }
+
+  /**
+   * Iterates over the buckets in increasing score order, and over each bucket from its most
+   * recently enqueued Application to its oldest one.
+   */
+  private class BucketIterator implements Iterator<Application> {
+    private final int expectedModCount = modCount; // modCount when this iterator was created
+    private int score = -1; // score of the bucket being iterated over
+    private int index = -1; // index of the next element in buckets[score]
+    private int remaining = size; // number of elements not returned yet
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public Application next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException("queue modified during iteration");
+      }
+      if (remaining == 0) {
+        throw new NoSuchElementException("No more elements in this iteration");
+      }
+      while (index < 0) {
+        score++;
+        index = counts[score] - 1;
+      }
+      remaining--;
+      return buckets[score][index--];
+    }
+  }
+}
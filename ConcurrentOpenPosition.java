@@ -0,0 +1,176 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe application handler of an open position, which many threads can add Applications
+ * to at the same time.
+ *
+ * Each thread adds its Applications to one of several stripes, chosen from the thread id. Each
+ * stripe is an ApplicationQueue with the capacity of the whole position, protected by its own
+ * lock, and keeps the best Applications it has seen. The best Applications of the position are
+ * always among the best ones of each stripe, so merging the stripes gives exactly the shortlist a
+ * single OpenPosition would keep.
+ *
+ * Once a stripe is full, no Application with a score lower than or equal to its lowest score can be
+ * part of the shortlist anymore. The highest such score is published as the cut-off score, which
+ * threads read without locking to reject most Applications right away.
+ */
+public class ConcurrentOpenPosition {
+  private final String positionName;
+  private final int capacity; // the number of vacancies
+  private final ApplicationQueue[] stripes; // per-stripe shortlists, created on first use
+  private final ReentrantLock[] locks; // locks[i] guards stripes[i]
+  private final AtomicInteger cutoff = new AtomicInteger(-1); // score to beat, -1 if none yet
+
+  /**
+   * Creates a new concurrent open position with the given capacity, and one stripe per available
+   * processor (rounded up to a power of two).
+   *
+   * @param capacity the number of vacancies of this position
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   */
+  public ConcurrentOpenPosition(String positionName, int capacity)
+      throws IllegalArgumentException {
+    this(positionName, capacity, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a new concurrent open position with the given capacity and at least the given number
+   * of stripes (rounded up to a power of two).
+   *
+   * @param capacity the number of vacancies of this position
+   * @param stripes  the number of stripes threads are spread over
+   * @throws IllegalArgumentException with a descriptive error message if the capacity or the
+   *                                  number of stripes is not a positive integer
+   */
+  public ConcurrentOpenPosition(String positionName, int capacity, int stripes)
+      throws IllegalArgumentException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("invalid capacity");
+    }
+    if (stripes <= 0 || stripes > 1 << 16) {
+      throw new IllegalArgumentException("invalid number of stripes");
+    }
+    this.positionName = positionName;
+    this.capacity = capacity;
+    int length = Integer.highestOneBit(stripes);
+    if (length < stripes) {
+      length <<= 1;
+    }
+    this.stripes = new ApplicationQueue[length];
+    this.locks = new ReentrantLock[length];
+    for (int i = 0; i < length; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  public String getPositionName() {
+    return this.positionName;
+  }
+
+  /**
+   * Returns the current cut-off score of this position: an Application with a lower or equal score
+   * is rejected without taking any lock. The cut-off score only increases over time.
+   *
+   * @return the current cut-off score, or -1 while no stripe is full
+   */
+  public int getCutoffScore() {
+    return cutoff.get();
+  }
+
+  /**
+   * Tries to add the given Application to this position. This method can be called concurrently
+   * by any number of threads.
+   *
+   * @param application the Application to add
+   * @return {@code false} if the given Application cannot be part of the shortlist, or
+   *         {@code true} if it was kept by the stripe of the calling thread. A kept Application may
+   *         still be displaced later by better ones added by other threads.
+   * @throws NullPointerException if the given Application is null
+   */
+  public boolean add(Application application) throws NullPointerException {
+    // reject without locking when the application cannot beat a full stripe
+    if (application.getScore() <= cutoff.get()) {
+      return false;
+    }
+    int stripe = stripeOf(Thread.currentThread());
+    ReentrantLock lock = locks[stripe];
+    lock.lock();
+    try {
+      ApplicationQueue queue = stripes[stripe];
+      if (queue == null) {
+        queue = new ApplicationQueue(capacity);
+        stripes[stripe] = queue;
+      }
+      if (!queue.offerIfBetter(application)) {
+        return false;
+      }
+      if (queue.size() == capacity) {
+        raiseCutoff(queue.peek().getScore());
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the shortlist of this position as a new OpenPosition, holding exactly the best
+   * Applications added so far. All the stripes are locked at once while they are copied, so the
+   * returned shortlist reflects a single point in time; they are merged after being unlocked.
+   *
+   * @return a new OpenPosition holding the shortlist of this position
+   */
+  public OpenPosition snapshot() {
+    ApplicationQueue[] copies = new ApplicationQueue[stripes.length];
+    for (ReentrantLock lock : locks) {
+      lock.lock();
+    }
+    try {
+      for (int i = 0; i < stripes.length; i++) {
+        if (stripes[i] != null) {
+          copies[i] = stripes[i].deepCopy();
+        }
+      }
+    } finally {
+      for (ReentrantLock lock : locks) {
+        lock.unlock();
+      }
+    }
+
+    OpenPosition merged = new OpenPosition(positionName, capacity);
+    for (ApplicationQueue copy : copies) {
+      if (copy != null) {
+        copy.spliterator().forEachRemaining(merged::add);
+      }
+    }
+    // the merged shortlist gives the tightest cut-off score known so far
+    raiseCutoff(merged.getCutoffScore());
+    return merged;
+  }
+
+  /**
+   * Raises the cut-off score to the given score, unless it is already higher.
+   *
+   * @param score the new cut-off score
+   */
+  private void raiseCutoff(int score) {
+    int current = cutoff.get();
+    while (current < score && !cutoff.compareAndSet(current, score)) {
+      current = cutoff.get();
+    }
+  }
+
+  /**
+   * Returns the index of the stripe used by the given thread. Thread ids are hashed so that
+   * consecutive ids are spread over the stripes.
+   *
+   * @param thread the thread adding an Application
+   * @return the index of its stripe
+   */
+  private int stripeOf(Thread thread) {
+    long h = thread.getId() * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32) & (stripes.length - 1);
+  }
+}
@@ -0,0 +1,334 @@
+/**
+ * Suppresses resubmissions of the same applicant before they reach the priority queue of an
+ * OpenPosition. Applicants are identified by their email, trimmed and lower-cased, and only a 64
+ * bit fingerprint of it is stored.
+ *
+ * The fingerprints of the Applications kept by the position are held in a compact open-addressing
+ * hash set, updated as an IntakeListener of the position, which tells exactly whether an
+ * applicant is in the shortlist. With Policy.KEEP_FIRST, applicants which were rejected, evicted
+ * or withdrawn are also recorded, in a Bloom filter sized for the expected number of such
+ * applicants: a new applicant is wrongly taken for a resubmission with the configured false
+ * positive rate. The Bloom filter takes about 1.2 bytes per expected applicant at a 1% false
+ * positive rate, up to twice that once rounded to a power of two. The hash set takes 32 to 64
+ * bytes per vacancy, plus 16 to 32 bytes with Policy.KEEP_BEST_SCORE, which also keeps a reference
+ * to the email of each applicant to rescore it.
+ *
+ * A DuplicateFilter is not thread-safe, as its OpenPosition.
+ */
+public class DuplicateFilter implements IntakeListener {
+  private static final int REJECTS_PER_VACANCY = 64; // default expected rejects per vacancy
+  private static final int MIN_EXPECTED_REJECTS = 1 << 10; // smallest default expected rejects
+  private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+  private final OpenPosition position;
+  private final Policy policy;
+  private final long[] fingerprints; // fingerprints of the kept applicants, 0 for an empty slot
+  private final String[] emails; // email of each fingerprint, null unless KEEP_BEST_SCORE
+  private final long[] seen; // Bloom filter of the applicants which left or never got in
+  private final int hashes; // number of bits set per applicant in the Bloom filter
+  private long duplicates; // number of resubmissions filtered out
+
+  /**
+   * How resubmissions of an applicant are handled
+   */
+  public enum Policy {
+    /**
+     * Only the first submission of an applicant is considered, whether or not it was kept.
+     */
+    KEEP_FIRST,
+
+    /**
+     * An applicant in the shortlist keeps its best score: a resubmission with a higher score
+     * rescores it in place, and any other one is filtered out. The priority queue of the position
+     * must be an IndexedApplicationQueue.
+     */
+    KEEP_BEST_SCORE
+  }
+
+  /**
+   * Creates a new DuplicateFilter in front of the given position, with a 1% false positive rate.
+   * The Bloom filter of Policy.KEEP_FIRST is sized for 64 rejected applicants per vacancy (at
+   * least 1024), i.e. 80 to 160 bytes per vacancy: positions expecting many more applicants
+   * should give their expected number of rejects instead.
+   *
+   * @param position the position to filter the Applications of
+   * @param policy   how resubmissions are handled
+   * @throws NullPointerException     if the position or the policy is null
+   * @throws IllegalArgumentException with a descriptive error message if the policy is
+   *                                  KEEP_BEST_SCORE and the queue of the position is not indexed
+   */
+  public DuplicateFilter(OpenPosition position, Policy policy)
+      throws NullPointerException, IllegalArgumentException {
+    this(position, policy, defaultExpectedRejects(position), DEFAULT_FALSE_POSITIVE_RATE);
+  }
+
+  /**
+   * Creates a new DuplicateFilter in front of the given position, and registers it as a listener
+   * of the position. The Applications already kept by the position are recorded. With
+   * Policy.KEEP_FIRST, the Bloom filter takes about -ln(falsePositiveRate) / ln(2)^2 bits per
+   * expected reject, rounded up to a power of two words, e.g. 1.2 bytes at a 1% rate.
+   *
+   * @param position          the position to filter the Applications of
+   * @param policy            how resubmissions are handled
+   * @param expectedRejects   expected number of distinct applicants rejected, evicted or withdrawn
+   * @param falsePositiveRate rate at which a new applicant is taken for one of them once that many
+   *                          were recorded
+   * @throws NullPointerException     if the position or the policy is null
+   * @throws IllegalArgumentException with a descriptive error message if the policy is
+   *                                  KEEP_BEST_SCORE and the queue of the position is not indexed,
+   *                                  the expected number is not positive, or the rate is not
+   *                                  strictly between 0 and 1
+   */
+  public DuplicateFilter(OpenPosition position, Policy policy, long expectedRejects,
+      double falsePositiveRate) throws NullPointerException, IllegalArgumentException {
+    if (position == null) {
+      throw new NullPointerException("position is null");
+    }
+    if (policy == null) {
+      throw new NullPointerException("policy is null");
+    }
+    if (policy == Policy.KEEP_BEST_SCORE
+        && !(position.shortlist() instanceof IndexedApplicationQueue)) {
+      throw new IllegalArgumentException("queue is not indexed");
+    }
+    if (expectedRejects <= 0) {
+      throw new IllegalArgumentException("invalid expected number of rejects");
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("invalid false positive rate");
+    }
+    this.position = position;
+    this.policy = policy;
+
+    // at most a quarter of the slots are used, so probe sequences stay short
+    int slots = Integer.highestOneBit(Math.max(position.shortlist().capacity(), 4) * 4 - 1) << 1;
+    fingerprints = new long[slots];
+    // only KEEP_BEST_SCORE looks up a kept applicant by its email
+    emails = policy == Policy.KEEP_BEST_SCORE ? new String[slots] : null;
+
+    if (policy == Policy.KEEP_FIRST) {
+      // optimal number of bits, rounded up to a power of two words
+      double bits = -expectedRejects * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+      long words = Math.max(1, (long) Math.ceil(bits / 64));
+      words = Math.min(Math.max(Long.highestOneBit(words - 1) << 1, 1), 1 << 26);
+      seen = new long[(int) words];
+      hashes = (int) Math.max(1, Math.round(seen.length * 64.0 / expectedRejects * Math.log(2)));
+    } else {
+      seen = null;
+      hashes = 0;
+    }
+
+    position.shortlist().spliterator()
+        .forEachRemaining(application -> added(position, application));
+    position.addIntakeListener(this);
+  }
+
+  /**
+   * Returns the default expected number of rejected applicants of the given position
+   *
+   * @param position the filtered position
+   * @return the number of rejects the default Bloom filter is sized for
+   * @throws NullPointerException if the position is null
+   */
+  private static long defaultExpectedRejects(OpenPosition position) throws NullPointerException {
+    if (position == null) {
+      throw new NullPointerException("position is null");
+    }
+    return Math.max((long) position.shortlist().capacity() * REJECTS_PER_VACANCY,
+        MIN_EXPECTED_REJECTS);
+  }
+
+  /**
+   * Tries to add the given Application to the position, unless it is a resubmission of an
+   * applicant which the policy filters out
+   *
+   * @param application the Application to add
+   * @return {@code true} if the Application was added to the position, or rescored an applicant
+   *         of the shortlist
+   * @throws NullPointerException if the Application is null
+   */
+  public boolean add(Application application) throws NullPointerException {
+    long fingerprint = fingerprint(application.getEmail());
+    int slot = slotOf(fingerprint);
+    if (fingerprints[slot] != 0) {
+      duplicates++;
+      if (policy == Policy.KEEP_BEST_SCORE) {
+        IndexedApplicationQueue queue = (IndexedApplicationQueue) position.shortlist();
+        if (application.getScore() > queue.get(emails[slot]).getScore()) {
+          return position.updateScore(emails[slot], application.getScore());
+        }
+      }
+      return false;
+    }
+    if (seen != null && mightHaveSeen(fingerprint)) {
+      duplicates++;
+      return false;
+    }
+    if (position.add(application)) {
+      return true;
+    }
+    if (seen != null) {
+      see(fingerprint);
+    }
+    return false;
+  }
+
+  /**
+   * Returns the position this filter adds Applications to
+   *
+   * @return the filtered position
+   */
+  public OpenPosition getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns the policy of this filter
+   *
+   * @return how resubmissions are handled
+   */
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Returns the number of resubmissions filtered out so far, including those which rescored an
+   * applicant
+   *
+   * @return the number of Applications recognized as resubmissions
+   */
+  public long getDuplicateCount() {
+    return duplicates;
+  }
+
+  /**
+   * Records the applicant of the given Application as kept
+   *
+   * @param position    the filtered position
+   * @param application the Application added to its shortlist
+   */
+  @Override
+  public void added(OpenPosition position, Application application) {
+    long fingerprint = fingerprint(application.getEmail());
+    int slot = slotOf(fingerprint);
+    fingerprints[slot] = fingerprint;
+    if (emails != null) {
+      emails[slot] = application.getEmail();
+    }
+  }
+
+  /**
+   * Forgets that the applicant of the given Application is kept, and with Policy.KEEP_FIRST,
+   * records it as seen
+   *
+   * @param position    the filtered position
+   * @param application the Application removed from its shortlist
+   */
+  @Override
+  public void removed(OpenPosition position, Application application) {
+    long fingerprint = fingerprint(application.getEmail());
+    int slot = slotOf(fingerprint);
+    if (fingerprints[slot] == 0) {
+      return;
+    }
+    // shift back the following entries of the probe sequence, so that no lookup stops early
+    int mask = fingerprints.length - 1;
+    int hole = slot;
+    for (int i = (slot + 1) & mask; fingerprints[i] != 0; i = (i + 1) & mask) {
+      int home = (int) fingerprints[i] & mask;
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        fingerprints[hole] = fingerprints[i];
+        if (emails != null) {
+          emails[hole] = emails[i];
+        }
+        hole = i;
+      }
+    }
+    fingerprints[hole] = 0;
+    if (emails != null) {
+      emails[hole] = null;
+    }
+    if (seen != null) {
+      see(fingerprint);
+    }
+  }
+
+  /**
+   * Returns the slot of the given fingerprint in the hash set of kept applicants, or the empty
+   * slot where it would be inserted
+   *
+   * @param fingerprint the fingerprint of an email
+   * @return the index of its slot
+   */
+  private int slotOf(long fingerprint) {
+    int mask = fingerprints.length - 1;
+    int i = (int) fingerprint & mask;
+    while (fingerprints[i] != 0 && fingerprints[i] != fingerprint) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  /**
+   * Sets the bits of the given fingerprint in the Bloom filter
+   *
+   * @param fingerprint the fingerprint of an email
+   */
+  private void see(long fingerprint) {
+    long mask = seen.length * 64L - 1;
+    long h1 = fingerprint >>> 32;
+    long h2 = fingerprint | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = (h1 + i * h2) & mask;
+      seen[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Checks whether all the bits of the given fingerprint are set in the Bloom filter
+   *
+   * @param fingerprint the fingerprint of an email
+   * @return {@code false} if the applicant was certainly not seen
+   */
+  private boolean mightHaveSeen(long fingerprint) {
+    long mask = seen.length * 64L - 1;
+    long h1 = fingerprint >>> 32;
+    long h2 = fingerprint | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = (h1 + i * h2) & mask;
+      if ((seen[(int) (bit >>> 6)] & 1L << bit) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns a 64 bit fingerprint of the given email, trimmed and lower-cased, without building the
+   * normalized String. The fingerprint is never 0, which marks empty slots.
+   *
+   * @param email the email of an applicant
+   * @return the fingerprint of the normalized email
+   */
+  static long fingerprint(String email) {
+    int from = 0;
+    int to = email.length();
+    while (from < to && Character.isWhitespace(email.charAt(from))) {
+      from++;
+    }
+    while (to > from && Character.isWhitespace(email.charAt(to - 1))) {
+      to--;
+    }
+    long h = 0xcbf29ce484222325L; // FNV-1a over the normalized chars
+    for (int i = from; i < to; i++) {
+      char c = email.charAt(i);
+      h = (h ^ (c < 0x80 ? (c >= 'A' && c <= 'Z' ? c + 32 : c) : Character.toLowerCase(c)))
+          * 0x100000001b3L;
+    }
+    // finalize as MurmurHash3, so that every bit depends on every char
+    h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+    h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h == 0 ? 1 : h;
+  }
+}
@@ -0,0 +1,317 @@
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * An ApplicationQueue which also indexes its Applications by email, so that a given applicant can
+ * be removed, or have its score changed, in O(log n) time instead of draining and rebuilding the
+ * heap. The index maps each email to the slot of its Application in the heap, and is updated
+ * every time an Application moves while percolating.
+ *
+ * Since Applications are identified by their email, a queue cannot hold two Applications with the
+ * same email.
+ */
+public class IndexedApplicationQueue extends ApplicationQueue {
+  private HashMap<String, int[]> slots; // slots.get(email)[0] is the index of its Application
+
+  /**
+   * Creates a new empty IndexedApplicationQueue with the given capacity
+   *
+   * @param capacity Capacity of this IndexedApplicationQueue
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   */
+  public IndexedApplicationQueue(int capacity) throws IllegalArgumentException {
+    this(capacity, TieBreak.NONE);
+  }
+
+  /**
+   * Creates a new empty IndexedApplicationQueue with the given capacity, ordering Applications
+   * with the same score according to the given tie-break
+   *
+   * @param capacity Capacity of this IndexedApplicationQueue
+   * @param tieBreak how Applications with the same score are ordered
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   * @throws NullPointerException     if the tie-break is null
+   */
+  public IndexedApplicationQueue(int capacity, TieBreak tieBreak)
+      throws IllegalArgumentException, NullPointerException {
+    this(capacity, tieBreak, 2);
+  }
+
+  /**
+   * Creates a new empty IndexedApplicationQueue with the given capacity and number of children
+   * per node, ordering Applications with the same score according to the given tie-break
+   *
+   * @param capacity Capacity of this IndexedApplicationQueue
+   * @param tieBreak how Applications with the same score are ordered
+   * @param arity    number of children of each node of the heap: 2, 4 or 8
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer, or the arity is not 2, 4 or 8
+   * @throws NullPointerException     if the tie-break is null
+   */
+  public IndexedApplicationQueue(int capacity, TieBreak tieBreak, int arity)
+      throws IllegalArgumentException, NullPointerException {
+    super(capacity, tieBreak, arity);
+    slots = new HashMap<String, int[]>();
+  }
+
+  /**
+   * Creates a new empty IndexedApplicationQueue with the given capacity and number of children
+   * per node, ordering Applications by the rank keys computed by the given RankKey
+   *
+   * @param capacity Capacity of this IndexedApplicationQueue
+   * @param rankKey  how Applications are ordered
+   * @param arity    number of children of each node of the heap: 2, 4 or 8
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer, or the arity is not 2, 4 or 8
+   * @throws NullPointerException     if the RankKey is null
+   */
+  public IndexedApplicationQueue(int capacity, RankKey rankKey, int arity)
+      throws IllegalArgumentException, NullPointerException {
+    super(capacity, rankKey, arity);
+    slots = new HashMap<String, int[]>();
+  }
+
+  /**
+   * Creates a new IndexedApplicationQueue over the given heap, and indexes its Applications
+   *
+   * @param queue    array min-heap of Applications, whose length is the capacity of the queue
+   * @param keys     rank keys of the Applications, with the same length
+   * @param size     number of Applications in the heap
+   * @param tieBreak how Applications with the same score are ordered
+   * @param arrivals number of Applications added to the queue so far
+   * @param arity    number of children of each node of the heap
+   */
+  private IndexedApplicationQueue(Application[] queue, long[] keys, int size, TieBreak tieBreak,
+      long arrivals, int arity) {
+    super(queue, keys, size, tieBreak, arrivals, arity);
+    slots = new HashMap<String, int[]>();
+  }
+
+  /**
+   * Creates a new IndexedApplicationQueue over the given heap, without percolating. See
+   * ApplicationQueue.fromHeap().
+   *
+   * @param queue    array min-heap of Applications, whose length is the capacity of the queue
+   * @param keys     rank keys of the Applications, with the same length
+   * @param size     number of Applications in the heap
+   * @param tieBreak how Applications with the same score are ordered
+   * @param arrivals number of Applications added to the queue so far
+   * @param arity    number of children of each node of the heap
+   * @return the new IndexedApplicationQueue
+   * @throws IllegalArgumentException with a descriptive error message if the arrays do not hold a
+   *                                  valid heap, or two Applications have the same email
+   */
+  static IndexedApplicationQueue fromHeap(Application[] queue, long[] keys, int size,
+      TieBreak tieBreak, long arrivals, int arity) throws IllegalArgumentException {
+    checkHeap(queue, keys, size, arity);
+    IndexedApplicationQueue indexed =
+        new IndexedApplicationQueue(queue, keys, size, tieBreak, arrivals, arity);
+    indexed.index();
+    return indexed;
+  }
+
+  /**
+   * Adds the given Application to this queue
+   *
+   * @param o Application to add to this queue
+   * @throws NullPointerException     if the given Application is null
+   * @throws IllegalStateException    with a descriptive error message if this queue is full
+   * @throws IllegalArgumentException with a descriptive error message if this queue already holds
+   *                                  an Application with the same email
+   */
+  @Override
+  public void enqueue(Application o)
+      throws NullPointerException, IllegalStateException, IllegalArgumentException {
+    checkNew(o);
+    super.enqueue(o);
+  }
+
+  /**
+   * Replaces the Application at the root of this queue with the given Application
+   *
+   * @param o Application to add to this queue
+   * @return the Application which was removed from the root
+   * @throws NullPointerException     if the given Application is null
+   * @throws NoSuchElementException   with a descriptive error message if this queue is empty
+   * @throws IllegalArgumentException with a descriptive error message if this queue already holds
+   *                                  an Application with the same email
+   */
+  @Override
+  public Application replaceTop(Application o) {
+    checkNew(o);
+    return super.replaceTop(o);
+  }
+
+  /**
+   * Adds the given Application to this queue if it is not full, or replaces its root with the
+   * given Application if the root has a lower priority
+   *
+   * @param o Application to add to this queue
+   * @return {@code true} if the given Application was added, {@code false} otherwise
+   * @throws NullPointerException     if the given Application is null
+   * @throws IllegalArgumentException with a descriptive error message if this queue already holds
+   *                                  an Application with the same email
+   */
+  @Override
+  public boolean offerIfBetter(Application o) throws NullPointerException {
+    return super.offerIfBetter(o); // offerKeyed() checks the email
+  }
+
+  /**
+   * Adds the given Application with the given rank key if this queue is not full, or replaces its
+   * root with it if the root has a lower priority
+   *
+   * @param o   Application to add to this queue
+   * @param key rank key of the Application
+   * @return {@code true} if the given Application was added, {@code false} otherwise
+   * @throws NullPointerException     if the given Application is null
+   * @throws IllegalArgumentException with a descriptive error message if this queue already holds
+   *                                  an Application with the same email
+   */
+  @Override
+  boolean offerKeyed(Application o, long key) {
+    checkNew(o);
+    return super.offerKeyed(o, key);
+  }
+
+  /**
+   * Checks whether this queue holds an Application with the given email
+   *
+   * @param email the email of the applicant
+   * @return {@code true} if this queue holds an Application with this email
+   */
+  public boolean contains(String email) {
+    return slots.containsKey(email);
+  }
+
+  /**
+   * Returns the Application with the given email
+   *
+   * @param email the email of the applicant
+   * @return the Application with this email, or null if this queue holds none
+   */
+  public Application get(String email) {
+    int[] slot = slots.get(email);
+    return slot == null ? null : elementAt(slot[0]);
+  }
+
+  /**
+   * Removes the Application with the given email from this queue, in O(log n) time
+   *
+   * @param email the email of the applicant to remove
+   * @return the removed Application, or null if this queue holds none with this email
+   */
+  public Application remove(String email) {
+    int[] slot = slots.get(email);
+    if (slot == null) {
+      return null;
+    }
+    return removeAt(slot[0]);
+  }
+
+  /**
+   * Replaces the Application with the given email by one with the same name and email and the
+   * given score, in O(log n) time. With TieBreak.ARRIVAL, the applicant keeps its rank among the
+   * Applications with its new score, as if it had arrived with it. With any other RankKey than a
+   * TieBreak, the rescored Application is ranked as a new arrival.
+   *
+   * @param email the email of the applicant to rescore
+   * @param score the new score of the applicant
+   * @return the replaced Application, or null if this queue holds none with this email
+   * @throws IllegalArgumentException with a descriptive error message if the score is not in the
+   *                                  0 .. 100 range
+   */
+  public Application updateScore(String email, int score) throws IllegalArgumentException {
+    int[] slot = slots.get(email);
+    if (slot == null) {
+      return null;
+    }
+    int i = slot[0];
+    Application old = elementAt(i);
+    Application rescored = new Application(old.getName(), old.getEmail(), score);
+    long sequence =
+        getTieBreak() != null ? TieBreak.sequenceOf(keyAt(i)) : reserveArrivals(1);
+    long key = getRankKey().key(rescored, sequence);
+    return replaceAt(i, rescored, key);
+  }
+
+  /**
+   * Returns a deep copy of this queue, with its own index
+   *
+   * @return a deep copy of this IndexedApplicationQueue
+   */
+  @Override
+  public IndexedApplicationQueue deepCopy() {
+    IndexedApplicationQueue copy =
+        new IndexedApplicationQueue(capacity(), getRankKey(), getArity());
+    copyInto(copy);
+    copy.index();
+    return copy;
+  }
+
+  /**
+   * Records the new slot of the Application at the given index
+   *
+   * @param i index in the heap of the Application
+   */
+  @Override
+  protected void placed(int i) {
+    String email = elementAt(i).getEmail();
+    int[] slot = slots.get(email);
+    if (slot == null) {
+      slots.put(email, new int[] {i});
+    } else {
+      slot[0] = i;
+    }
+  }
+
+  /**
+   * Forgets the slot of the given Application
+   *
+   * @param o the Application which left the heap
+   */
+  @Override
+  protected void removed(Application o) {
+    // a rescored Application is replaced by one with the same email, which keeps the slot
+    int[] slot = slots.get(o.getEmail());
+    Application current = slot == null ? null : elementAt(slot[0]);
+    if (current != null && current != o && current.getEmail().equals(o.getEmail())) {
+      return;
+    }
+    slots.remove(o.getEmail());
+  }
+
+  /**
+   * Indexes every Application of the heap
+   *
+   * @throws IllegalArgumentException with a descriptive error message if two Applications have
+   *                                  the same email
+   */
+  private void index() throws IllegalArgumentException {
+    slots.clear();
+    for (int i = 0; i < size(); i++) {
+      if (slots.put(elementAt(i).getEmail(), new int[] {i}) != null) {
+        throw new IllegalArgumentException("duplicate email");
+      }
+    }
+  }
+
+  /**
+   * Checks that the given Application can be added to this queue
+   *
+   * @param o the Application to add
+   * @throws NullPointerException     if the given Application is null
+   * @throws IllegalArgumentException with a descriptive error message if this queue already holds
+   *                                  an Application with the same email
+   */
+  private void checkNew(Application o) throws NullPointerException, IllegalArgumentException {
+    if (o == null) {
+      throw new NullPointerException("application is null");
+    }
+    if (slots.containsKey(o.getEmail())) {
+      throw new IllegalArgumentException("duplicate email");
+    }
+  }
+}
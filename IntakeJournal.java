@@ -0,0 +1,757 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the Applications accepted and evicted by OpenPositions. The journal
+ * is registered as an IntakeListener of the positions it protects, and can be shared by positions
+ * used from different threads. Records are appended right after each change, not before it: if a
+ * record cannot be written, the change is kept by the position, whose modifying call throws an
+ * UncheckedIOException, and the journal is unusable from then on.
+ *
+ * Records are appended to an in-memory buffer, and written to the file in batches with a single
+ * FileChannel write (group commit): while a thread writes a batch, the other threads keep
+ * appending to a second buffer, which is written by the next thread needing it. When the journal
+ * forces its writes to disk depends on its FsyncPolicy.
+ *
+ * The file starts with a header holding the offset of its first record: offsets in the journal
+ * count every record ever written to it, including the ones which were since discarded. Each
+ * record is its length, a CRC32 checksum, and a body holding the kind of record, the score, then
+ * the position name, the name and the email as length-prefixed UTF-8 Strings. A record torn by a
+ * crash is detected by its checksum, and dropped when the journal is opened again.
+ *
+ * To recover a position, its last snapshot (see checkpoint()) is restored, and the records of the
+ * journal written after the snapshot are replayed. Once every position with records in the
+ * journal was checkpointed after some of them, checkpoint() rewrites the file without them, so the
+ * journal only grows with the records written since the oldest of these checkpoints.
+ */
+public class IntakeJournal implements IntakeListener, Closeable {
+  private static final byte ADDED = 1; // kind of record of an accepted Application
+  private static final byte REMOVED = 2; // kind of record of an evicted Application
+  private static final int BUFFER_SIZE = 1 << 16; // bytes buffered before a batch is written
+  private static final int MAX_RECORD_SIZE = 1 << 24; // longer records are considered corrupt
+  private static final int MAGIC = 0x494A4E4C; // first int of a journal file, "IJNL"
+  private static final int HEADER_SIZE = 12; // the magic, then the offset of the first record
+
+  /**
+   * When the journal forces its writes to disk
+   */
+  public enum FsyncPolicy {
+    /**
+     * Every change is forced to disk before the call modifying the position returns. Changes made
+     * by different threads at the same time are forced together.
+     */
+    EVERY_WRITE,
+
+    /**
+     * Changes are written and forced to disk by a background thread at a fixed interval, so up to
+     * one interval of changes can be lost by a crash of the machine.
+     */
+    INTERVAL,
+
+    /**
+     * Changes are written when the buffer is full, and never forced: they survive a crash of the
+     * JVM once written, but not a crash of the machine.
+     */
+    NEVER
+  }
+
+  private final Path file; // path of the journal file
+  private final FsyncPolicy policy; // when writes are forced to disk
+  private final ScheduledExecutorService flusher; // writes the buffer periodically, if INTERVAL
+  private final Object checkpointing = new Object(); // held while a checkpoint is written
+  private final Object lock = new Object(); // guards the fields below
+  private FileChannel channel; // the journal file, only replaced by the thread which is writing
+  private long base; // offset in the journal of the first record kept in the file
+  // offset of the first record needed to recover each position with records in the journal
+  private final HashMap<String, Long> needed = new HashMap<String, Long>();
+  private ByteBuffer buffer; // records appended but not written yet
+  private ByteBuffer spare; // second buffer, null while a batch is being written
+  private long appended; // offset in the journal after the last appended record
+  private long written; // offset in the journal up to which records are written
+  private boolean writing; // whether a thread is writing a batch
+  private boolean failed; // whether a write failed, in which case the journal is unusable
+  private boolean closed; // whether this journal was closed
+
+  /**
+   * Opens the given journal file, creating it if it does not exist, with the EVERY_WRITE or NEVER
+   * policy. A torn record at the end of the file is dropped.
+   *
+   * @param file   the journal file
+   * @param policy when writes are forced to disk
+   * @throws IOException              if the file cannot be opened
+   * @throws IllegalArgumentException with a descriptive error message if the policy is INTERVAL,
+   *                                  which needs an interval
+   * @throws NullPointerException     if the file or the policy is null
+   */
+  public IntakeJournal(Path file, FsyncPolicy policy)
+      throws IOException, IllegalArgumentException, NullPointerException {
+    this(file, policy, 0);
+  }
+
+  /**
+   * Opens the given journal file, creating it if it does not exist. A torn record at the end of
+   * the file is dropped.
+   *
+   * @param file           the journal file
+   * @param policy         when writes are forced to disk
+   * @param intervalMillis milliseconds between two writes, with the INTERVAL policy
+   * @throws IOException              if the file cannot be opened
+   * @throws IllegalArgumentException with a descriptive error message if the policy is INTERVAL
+   *                                  and the interval is not a positive integer
+   * @throws NullPointerException     if the file or the policy is null
+   */
+  public IntakeJournal(Path file, FsyncPolicy policy, long intervalMillis)
+      throws IOException, IllegalArgumentException, NullPointerException {
+    if (policy == null) {
+      throw new NullPointerException("policy is null");
+    }
+    if (policy == FsyncPolicy.INTERVAL && intervalMillis <= 0) {
+      throw new IllegalArgumentException("invalid interval");
+    }
+    this.policy = policy;
+    this.file = file;
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      if (channel.size() < HEADER_SIZE) {
+        // a new journal, or one whose creation was interrupted
+        channel.truncate(0);
+        writeHeader(channel, 0);
+        channel.force(true);
+      }
+      base = readHeader(channel);
+      // every position with records in the file may need all of them
+      long end = scan(channel, HEADER_SIZE, null,
+          (kind, score, body, offset) -> needed.putIfAbsent(
+              new String(body, 6, offset - 6, StandardCharsets.UTF_8), base));
+      channel.truncate(end);
+      channel.position(end);
+      appended = base + end - HEADER_SIZE;
+      written = appended;
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    spare = ByteBuffer.allocate(BUFFER_SIZE);
+
+    if (policy == FsyncPolicy.INTERVAL) {
+      flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "intake-journal");
+        thread.setDaemon(true);
+        return thread;
+      });
+      flusher.scheduleWithFixedDelay(() -> {
+        try {
+          flush();
+        } catch (IOException e) {
+          // the journal is marked as failed, and the next change reports it
+        }
+      }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    } else {
+      flusher = null;
+    }
+  }
+
+  /**
+   * Records that the given Application was accepted by the given position
+   *
+   * @param position    the position which accepted the Application
+   * @param application the accepted Application
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  @Override
+  public void added(OpenPosition position, Application application) {
+    log(ADDED, position, application);
+  }
+
+  /**
+   * Records that the given Application was evicted by the given position
+   *
+   * @param position    the position which evicted the Application
+   * @param application the evicted Application
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  @Override
+  public void removed(OpenPosition position, Application application) {
+    log(REMOVED, position, application);
+  }
+
+  /**
+   * Writes every record appended so far to the file, and forces them to disk unless the policy is
+   * NEVER
+   *
+   * @return the offset in the journal after the last record written
+   * @throws IOException if the records cannot be written
+   */
+  public long flush() throws IOException {
+    long end;
+    synchronized (lock) {
+      end = appended;
+    }
+    sync(end);
+    return end;
+  }
+
+  /**
+   * Writes a snapshot of the given position, which records how much of this journal it already
+   * holds, so that recover() only replays the records written after it. The snapshot is written
+   * to a temporary file first, forced to disk, then moved over the given file, and the move is
+   * forced to disk too: after a crash, the snapshot file holds either the previous snapshot or
+   * the complete new one. The position must not be modified while its snapshot is written.
+   *
+   * Once the snapshot is in place, the records which no position needs anymore are discarded:
+   * the records still needed are copied to a temporary journal file, which is forced to disk and
+   * moved over the journal file. A position which has records in the journal but is never
+   * checkpointed keeps all its records, and the ones written after them, in the file.
+   *
+   * @param position    the position to write
+   * @param snapshot    the snapshot file
+   * @param deduplicate whether repeated Strings are written only once
+   * @throws IOException              if the journal or the snapshot cannot be written
+   * @throws NullPointerException     if the position or the snapshot file is null
+   * @throws IllegalArgumentException with a descriptive error message if the position is ordered
+   *                                  by another RankKey than a TieBreak
+   */
+  public void checkpoint(OpenPosition position, Path snapshot, boolean deduplicate)
+      throws IOException, NullPointerException, IllegalArgumentException {
+    synchronized (checkpointing) {
+      long offset = flush();
+      channel.force(false); // the snapshot must never be ahead of the journal on disk
+      Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+      OpenPositionSnapshot.write(position, temp, deduplicate, offset);
+      try (FileChannel written = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        written.force(true); // otherwise the move could reach the disk before the data
+      }
+      Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      forceDirectory(snapshot.toAbsolutePath().getParent());
+
+      synchronized (lock) {
+        needed.put(nameOf(position), offset);
+      }
+      discard();
+    }
+  }
+
+  /**
+   * Rewrites the journal file without the records which no position needs anymore, if there are
+   * any. Other threads keep appending records to the buffer meanwhile, but wait before writing
+   * them to the file until it is replaced.
+   *
+   * @throws IOException if the new journal file cannot be written
+   */
+  private void discard() throws IOException {
+    long keep; // offset of the first record to keep
+    long end; // offset after the last record written to the file
+    synchronized (lock) {
+      while (writing) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("interrupted while writing the journal");
+        }
+      }
+      keep = written;
+      for (long offset : needed.values()) {
+        keep = Math.min(keep, offset);
+      }
+      if (closed || failed || keep <= base) {
+        return;
+      }
+      writing = true; // keeps other threads from writing to the file
+      end = written;
+    }
+
+    try {
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      FileChannel rewritten = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try {
+        writeHeader(rewritten, keep);
+        long from = keep - base + HEADER_SIZE;
+        long to = end - base + HEADER_SIZE;
+        rewritten.position(HEADER_SIZE);
+        while (from < to) {
+          from += channel.transferTo(from, to - from, rewritten);
+        }
+        rewritten.force(true);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        rewritten.close();
+        Files.deleteIfExists(temp);
+        throw e; // the journal file was not replaced
+      }
+      FileChannel replaced = channel;
+      channel = rewritten;
+      base = keep;
+      replaced.close();
+    } finally {
+      synchronized (lock) {
+        writing = false;
+        lock.notifyAll();
+      }
+    }
+    forceDirectory(file.toAbsolutePath().getParent());
+  }
+
+  /**
+   * Forces the entries of the given directory to disk, so that a file moved into it survives a
+   * crash. Nothing happens on platforms where a directory cannot be opened, such as Windows,
+   * whose moves do not need it.
+   *
+   * @param directory the directory to force
+   * @throws IOException if the directory cannot be forced
+   */
+  private static void forceDirectory(Path directory) throws IOException {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(directory, StandardOpenOption.READ);
+    } catch (IOException e) {
+      return;
+    }
+    try {
+      channel.force(true);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes every record appended so far, forces them to disk unless the policy is NEVER, and
+   * closes the journal file
+   *
+   * @throws IOException if the records cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    if (flusher != null) {
+      flusher.shutdown();
+    }
+    synchronized (checkpointing) {
+      try {
+        sync(appended());
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Restores a position from the given snapshot, then replays the records of the given journal
+   * written after it. If the journal does not exist, the snapshot is restored as is.
+   *
+   * @param snapshot the snapshot file, written by checkpoint()
+   * @param journal  the journal file
+   * @return the recovered position
+   * @throws IOException          if the files cannot be read, or the snapshot is not valid
+   * @throws NullPointerException if a file is null
+   */
+  public static OpenPosition recover(Path snapshot, Path journal)
+      throws IOException, NullPointerException {
+    OpenPosition position = OpenPositionSnapshot.read(snapshot);
+    if (Files.exists(journal)) {
+      replay(journal, OpenPositionSnapshot.journalOffset(snapshot), position);
+    }
+    return position;
+  }
+
+  /**
+   * Offers the given position every Application accepted by a position with the same name, as
+   * recorded in the given journal from the given offset, in order. Only the records whose score
+   * could still beat the cut-off score of the position are decoded and re-offered.
+   *
+   * Removals (evictions, withdrawals, rescores and removeIf()) are replayed too: by email if the
+   * position is backed by an IndexedApplicationQueue, and otherwise by removing one Application
+   * with the same name, email and score. An eviction removed the root of the queue, which is
+   * checked first, so only the removals of other Applications scan the whole queue.
+   *
+   * The records before the first one kept in the file were only discarded once every position
+   * with records among them was checkpointed after them, so replaying from an earlier offset, such
+   * as 0 for a position which was never checkpointed, starts from the first kept record.
+   *
+   * @param journal  the journal file
+   * @param from     offset in the journal of the first record to replay
+   * @param position the position to recover
+   * @return how many replayed Applications were accepted and rejected, and how many were evicted
+   *         or removed
+   * @throws IOException          if the journal cannot be read
+   * @throws NullPointerException if the journal or the position is null
+   */
+  public static IntakeResult replay(Path journal, long from, OpenPosition position)
+      throws IOException, NullPointerException {
+    byte[] name = nameOf(position).getBytes(StandardCharsets.UTF_8);
+    long[] counts = new long[3]; // accepted, rejected, evicted
+    boolean indexed = position.shortlist() instanceof IndexedApplicationQueue;
+    try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return new IntakeResult(0, 0, 0); // created but never written
+      }
+      long base = readHeader(channel);
+      // index in the file of the first record to read
+      long start = Math.max(from, base) - base + HEADER_SIZE;
+      scan(channel, start, name, (kind, score, body, offset) -> {
+        if (kind == REMOVED) {
+          int nameLength = readInt(body, offset);
+          offset += 4 + nameLength;
+          String email =
+              new String(body, offset + 4, readInt(body, offset), StandardCharsets.UTF_8);
+          if (indexed ? position.withdraw(email)
+              : removeOne(position,
+                  new String(body, offset - nameLength, nameLength, StandardCharsets.UTF_8),
+                  email, score)) {
+            counts[2]++;
+          }
+          return;
+        }
+        if (!position.mayAccept(score)) {
+          counts[1]++;
+          return;
+        }
+        int nameLength = readInt(body, offset);
+        String applicantName = new String(body, offset + 4, nameLength, StandardCharsets.UTF_8);
+        offset += 4 + nameLength;
+        int emailLength = readInt(body, offset);
+        String email = new String(body, offset + 4, emailLength, StandardCharsets.UTF_8);
+        boolean full = position.isFull();
+        if (position.add(new Application(applicantName, email, score))) {
+          counts[0]++;
+          if (full) {
+            counts[2]++;
+          }
+        } else {
+          counts[1]++;
+        }
+      });
+    }
+    return new IntakeResult(counts[0], counts[1], counts[2]);
+  }
+
+  /**
+   * Removes one Application with the given name, email and score from the given position, if it
+   * holds one. Positions which are not indexed may hold several Applications with the same email.
+   * The root of the queue is tried first, since most removals are evictions of the root; the
+   * whole queue is only scanned when the root does not match.
+   *
+   * @param position      the position to remove the Application from
+   * @param applicantName the name of the applicant
+   * @param email         the email of the applicant
+   * @param score         the score of the Application
+   * @return {@code true} if an Application was removed
+   */
+  private static boolean removeOne(OpenPosition position, String applicantName, String email,
+      int score) {
+    Predicate<Application> same = a -> a.getScore() == score && a.getEmail().equals(email)
+        && a.getName().equals(applicantName);
+    if (position.removeLowestIf(same)) {
+      return true;
+    }
+    boolean[] found = new boolean[1];
+    return position.removeIf(a -> !found[0] && same.test(a) && (found[0] = true)) > 0;
+  }
+
+  /**
+   * Receives the records read by scan()
+   */
+  private interface RecordHandler {
+    /**
+     * Handles a record
+     *
+     * @param kind   ADDED or REMOVED
+     * @param score  the score of the Application
+     * @param body   the body of the record
+     * @param offset offset in the body of the name of the Application
+     */
+    void handle(byte kind, int score, byte[] body, int offset);
+  }
+
+  /**
+   * Writes the header of a journal file whose first record has the given offset
+   *
+   * @param channel the journal file
+   * @param base    offset in the journal of the first record of the file
+   * @throws IOException if the header cannot be written
+   */
+  private static void writeHeader(FileChannel channel, long base) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(base);
+    header.flip();
+    while (header.hasRemaining()) {
+      channel.write(header, header.position());
+    }
+  }
+
+  /**
+   * Reads the header of a journal file
+   *
+   * @param channel the journal file, holding at least a header
+   * @return offset in the journal of the first record of the file
+   * @throws IOException if the header cannot be read, or the file is not a journal
+   */
+  private static long readHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        throw new IOException("invalid journal");
+      }
+    }
+    long base = header.getLong(4);
+    if (header.getInt(0) != MAGIC || base < 0) {
+      throw new IOException("invalid journal");
+    }
+    return base;
+  }
+
+  /**
+   * Returns the name under which the records of the given position are written
+   *
+   * @param position the position
+   * @return the name of the position, or an empty String if it has none
+   */
+  private static String nameOf(OpenPosition position) {
+    return position.getPositionName() == null ? "" : position.getPositionName();
+  }
+
+  /**
+   * Reads the valid records of the given journal file from the given index in the file, and passes
+   * the records of the given position to the given handler
+   *
+   * @param channel  the journal file
+   * @param from     index in the file of the first record to read
+   * @param position the UTF-8 name of the position whose records are handled, or null to handle
+   *                 the records of every position
+   * @param handler  receives the records, or null
+   * @return the index in the file after the last valid record
+   * @throws IOException if the journal cannot be read
+   */
+  private static long scan(FileChannel channel, long from, byte[] position, RecordHandler handler)
+      throws IOException {
+    channel.position(from);
+    // the stream is not closed, since that would close the channel
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+    CRC32 crc = new CRC32();
+    byte[] body = new byte[256];
+    long offset = from;
+    while (true) {
+      int length;
+      int checksum;
+      try {
+        length = in.readInt();
+        checksum = in.readInt();
+        if (length < 2 || length > MAX_RECORD_SIZE) {
+          return offset;
+        }
+        if (length > body.length) {
+          body = new byte[Math.max(length, body.length * 2)];
+        }
+        in.readFully(body, 0, length);
+      } catch (EOFException e) {
+        return offset; // torn record
+      }
+      crc.reset();
+      crc.update(body, 0, length);
+      if ((int) crc.getValue() != checksum) {
+        return offset;
+      }
+      offset += 8 + length;
+
+      if (handler != null && (body[0] == ADDED || body[0] == REMOVED)) {
+        int positionLength = readInt(body, 2);
+        if (position == null
+            || Arrays.equals(body, 6, 6 + positionLength, position, 0, position.length)) {
+          handler.handle(body[0], body[1], body, 6 + positionLength);
+        }
+      }
+    }
+  }
+
+  /**
+   * Appends a record of the given kind, and waits until it is written if the policy is
+   * EVERY_WRITE
+   *
+   * @param kind        ADDED or REMOVED
+   * @param position    the position which was modified
+   * @param application the Application which was added or removed
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  private void log(byte kind, OpenPosition position, Application application) {
+    String name = nameOf(position);
+    synchronized (lock) {
+      // a position is only checkpointed after its first record
+      needed.putIfAbsent(name, appended);
+    }
+    try {
+      long end = append(encode(kind, position, application));
+      if (policy == FsyncPolicy.EVERY_WRITE) {
+        sync(end);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the record of the given change
+   *
+   * @param kind        ADDED or REMOVED
+   * @param position    the position which was modified
+   * @param application the Application which was added or removed
+   * @return the record, with its length and checksum
+   */
+  private static byte[] encode(byte kind, OpenPosition position, Application application) {
+    byte[] positionBytes = nameOf(position).getBytes(StandardCharsets.UTF_8);
+    byte[] name = application.getName().getBytes(StandardCharsets.UTF_8);
+    byte[] email = application.getEmail().getBytes(StandardCharsets.UTF_8);
+    int length = 2 + 12 + positionBytes.length + name.length + email.length;
+    ByteBuffer record = ByteBuffer.allocate(8 + length);
+    record.putInt(length).putInt(0);
+    record.put(kind).put((byte) application.getScore());
+    record.putInt(positionBytes.length).put(positionBytes);
+    record.putInt(name.length).put(name);
+    record.putInt(email.length).put(email);
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 8, length);
+    record.putInt(4, (int) crc.getValue());
+    return record.array();
+  }
+
+  /**
+   * Appends the given record to the buffer, writing the buffer first if it is full
+   *
+   * @param record the record to append
+   * @return the offset in the journal after the record
+   * @throws IOException if the buffer cannot be written, or the journal is closed
+   */
+  private long append(byte[] record) throws IOException {
+    while (true) {
+      long end;
+      synchronized (lock) {
+        if (closed) {
+          throw new IOException("journal is closed");
+        }
+        if (failed) {
+          throw new IOException("journal write failed");
+        }
+        if (buffer.position() == 0 && buffer.capacity() < record.length) {
+          buffer = ByteBuffer.allocate(record.length);
+        }
+        if (buffer.remaining() >= record.length) {
+          buffer.put(record);
+          appended += record.length;
+          return appended;
+        }
+        end = appended;
+      }
+      sync(end); // the buffer is full
+    }
+  }
+
+  /**
+   * Returns the offset in the journal after the last appended record
+   *
+   * @return the offset after the last appended record
+   */
+  private long appended() {
+    synchronized (lock) {
+      return appended;
+    }
+  }
+
+  /**
+   * Waits until the records before the given offset are written. If no other thread is writing
+   * a batch, this thread writes every record appended so far, including the ones appended by
+   * other threads, and forces them to disk unless the policy is NEVER.
+   *
+   * @param end offset in the journal of the end of the records to write
+   * @throws IOException if the records cannot be written
+   */
+  private void sync(long end) throws IOException {
+    ByteBuffer batch;
+    long batchEnd;
+    synchronized (lock) {
+      while (writing && written < end) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("interrupted while writing the journal");
+        }
+      }
+      if (written >= end) {
+        return;
+      }
+      if (failed) {
+        throw new IOException("journal write failed");
+      }
+      writing = true;
+      batch = buffer;
+      buffer = spare;
+      spare = null;
+      batchEnd = appended;
+    }
+
+    boolean done = false;
+    try {
+      batch.flip();
+      while (batch.hasRemaining()) {
+        channel.write(batch);
+      }
+      if (policy != FsyncPolicy.NEVER) {
+        channel.force(false);
+      }
+      done = true;
+    } finally {
+      synchronized (lock) {
+        batch.clear();
+        spare = batch;
+        writing = false;
+        if (done) {
+          written = batchEnd;
+        } else {
+          failed = true;
+        }
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Reads a big-endian int from the given array
+   *
+   * @param bytes  the array to read from
+   * @param offset offset of the int in the array
+   * @return the int
+   */
+  private static int readInt(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+        | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+  }
+}
@@ -0,0 +1,25 @@
+/**
+ * Receives the changes of the shortlist of an OpenPosition. Listeners are called synchronously by
+ * the thread modifying the position, after its priority queue and its statistics were modified,
+ * so they must be fast. When an Application replaces another one, the eviction is reported before
+ * the addition. An exception thrown by a listener does not undo the change nor keep the other
+ * notifications from being made: it is thrown by the modifying call once all of them were made.
+ */
+public interface IntakeListener {
+  /**
+   * Called when an Application was added to the priority queue of a position
+   *
+   * @param position    the position which accepted the Application
+   * @param application the accepted Application
+   */
+  void added(OpenPosition position, Application application);
+
+  /**
+   * Called when an Application was removed from the priority queue of a position, because it was
+   * evicted, withdrawn or rescored
+   *
+   * @param position    the position which removed the Application
+   * @param application the removed Application
+   */
+  void removed(OpenPosition position, Application application);
+}
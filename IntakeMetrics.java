@@ -0,0 +1,313 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms describing the intake of one or more OpenPositions. Metrics are only
+ * collected once set on a position with OpenPosition.setMetrics(): a position without metrics only
+ * pays for a null check on each call.
+ *
+ * Counters are LongAdders, and histograms have logarithmic buckets split in 16 linear
+ * sub-buckets, as HDR histograms do, so that any recorded value is known within 1/16 of itself.
+ * Every metric can be updated and read from any thread, e.g. through JMX after register().
+ */
+public class IntakeMetrics implements IntakeMetricsMXBean {
+  private final LongAdder accepted = new LongAdder(); // Applications added to a queue
+  private final LongAdder rejected = new LongAdder(); // Applications not added to a queue
+  private final LongAdder evicted = new LongAdder(); // Applications replaced by a better one
+  private final LongAdder fullOffers = new LongAdder(); // add() calls on a full position
+  private final LongAdder batches = new LongAdder(); // addAll() and addAllParallel() calls
+  private final LongAdder iterations = new LongAdder(); // listings of the Applications
+  private final LongAdder cutoffRaises = new LongAdder(); // times the cut-off score went up
+  private volatile int cutoffScore = -1; // latest cut-off score
+  private final Histogram addLatency = new Histogram(); // nanoseconds per add() call
+  private final Histogram batchLatency = new Histogram(); // nanoseconds per batch
+  private final Histogram siftDepth = new Histogram(); // levels moved per percolation
+
+  /**
+   * A histogram of non-negative long values, with 16 linear sub-buckets per power of two
+   */
+  public static class Histogram {
+    private static final int SUB_BUCKET_BITS = 4; // 16 sub-buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts =
+        new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS); // values per bucket
+    private final LongAdder total = new LongAdder(); // number of recorded values
+    private final LongAdder sum = new LongAdder(); // sum of the recorded values
+
+    /**
+     * Records the given value. Negative values are recorded as 0.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+      counts.incrementAndGet(bucketOf(Math.max(value, 0)));
+      total.increment();
+      sum.add(Math.max(value, 0));
+    }
+
+    /**
+     * Returns the number of recorded values
+     *
+     * @return the number of recorded values
+     */
+    public long getCount() {
+      return total.sum();
+    }
+
+    /**
+     * Returns the mean of the recorded values
+     *
+     * @return the mean of the recorded values, or 0 if none was recorded
+     */
+    public double getMean() {
+      long count = total.sum();
+      return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Returns the given percentile of the recorded values, using the nearest-rank method
+     *
+     * @param percentile the percentile to compute, in the 0 .. 100 range
+     * @return the highest value of the bucket holding this percentile, or 0 if no value was
+     *         recorded
+     * @throws IllegalArgumentException with a descriptive error message if the percentile is not
+     *                                  in the 0 .. 100 range
+     */
+    public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+      if (!(percentile >= 0 && percentile <= 100)) {
+        throw new IllegalArgumentException("invalid percentile");
+      }
+      long[] snapshot = new long[counts.length()];
+      long count = 0;
+      for (int i = 0; i < snapshot.length; i++) {
+        snapshot[i] = counts.get(i);
+        count += snapshot[i];
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < snapshot.length; i++) {
+        seen += snapshot[i];
+        if (seen >= rank) {
+          return highestValueOf(i);
+        }
+      }
+      return highestValueOf(snapshot.length - 1);
+    }
+
+    /**
+     * Returns the bucket holding the given value. Values below 16 have a bucket each; above, the
+     * bucket is given by the position of the highest set bit and the 4 bits below it.
+     *
+     * @param value a non-negative value
+     * @return the index of its bucket
+     */
+    private static int bucketOf(long value) {
+      if (value < SUB_BUCKETS) {
+        return (int) value;
+      }
+      int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Returns the highest value recorded in the given bucket
+     *
+     * @param bucket the index of a bucket
+     * @return the highest value of this bucket
+     */
+    private static long highestValueOf(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+        return bucket;
+      }
+      int shift = bucket / SUB_BUCKETS - 1;
+      long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+      return lowest + (1L << shift) - 1;
+    }
+  }
+
+  /**
+   * Records a call to OpenPosition.add()
+   *
+   * @param added  whether the Application was added
+   * @param full   whether the position was full before the call
+   * @param nanos  duration of the call, in nanoseconds
+   * @param cutoff cut-off score of the position after the call
+   */
+  void recordAdd(boolean added, boolean full, long nanos, int cutoff) {
+    if (added) {
+      accepted.increment();
+      if (full) {
+        evicted.increment();
+      }
+    } else {
+      rejected.increment();
+    }
+    if (full) {
+      fullOffers.increment();
+    }
+    addLatency.record(nanos);
+    recordCutoff(cutoff);
+  }
+
+  /**
+   * Records a call to OpenPosition.addAll() or addAllParallel()
+   *
+   * @param result the result of the call
+   * @param nanos  duration of the call, in nanoseconds
+   * @param cutoff cut-off score of the position after the call
+   */
+  void recordBatch(IntakeResult result, long nanos, int cutoff) {
+    accepted.add(result.getAccepted());
+    rejected.add(result.getRejected());
+    evicted.add(result.getEvicted());
+    batches.increment();
+    batchLatency.record(nanos);
+    recordCutoff(cutoff);
+  }
+
+  /**
+   * Records the number of levels an Application moved while percolating up or down a heap
+   *
+   * @param levels number of levels moved
+   */
+  void recordSift(int levels) {
+    siftDepth.record(levels);
+  }
+
+  /**
+   * Records a listing of the Applications of a position
+   */
+  void recordIteration() {
+    iterations.increment();
+  }
+
+  /**
+   * Records the cut-off score of a position, and whether it went up
+   *
+   * @param cutoff the cut-off score of the position
+   */
+  private void recordCutoff(int cutoff) {
+    if (cutoff > cutoffScore) {
+      cutoffRaises.increment();
+    }
+    cutoffScore = cutoff;
+  }
+
+  /**
+   * Registers these metrics in the platform MBean server under the given name
+   *
+   * @param name the name of the position, used as the name property of the MBean
+   * @return the name of the registered MBean
+   * @throws JMException if the MBean cannot be registered, e.g. if the name is already used
+   */
+  public ObjectName register(String name) throws JMException {
+    ObjectName objectName =
+        new ObjectName("OpenPosition:type=IntakeMetrics,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  @Override
+  public long getAccepted() {
+    return accepted.sum();
+  }
+
+  @Override
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  @Override
+  public long getEvicted() {
+    return evicted.sum();
+  }
+
+  @Override
+  public long getFullQueueOffers() {
+    return fullOffers.sum();
+  }
+
+  @Override
+  public long getBatches() {
+    return batches.sum();
+  }
+
+  @Override
+  public long getIterations() {
+    return iterations.sum();
+  }
+
+  @Override
+  public int getCutoffScore() {
+    return cutoffScore;
+  }
+
+  @Override
+  public long getCutoffRaises() {
+    return cutoffRaises.sum();
+  }
+
+  @Override
+  public long getAddLatencyP50() {
+    return addLatency.getValueAtPercentile(50);
+  }
+
+  @Override
+  public long getAddLatencyP99() {
+    return addLatency.getValueAtPercentile(99);
+  }
+
+  @Override
+  public long getAddLatencyP999() {
+    return addLatency.getValueAtPercentile(99.9);
+  }
+
+  @Override
+  public long getBatchLatencyP99() {
+    return batchLatency.getValueAtPercentile(99);
+  }
+
+  @Override
+  public double getMeanSiftDepth() {
+    return siftDepth.getMean();
+  }
+
+  @Override
+  public long getSiftDepthP99() {
+    return siftDepth.getValueAtPercentile(99);
+  }
+
+  /**
+   * Returns the histogram of the durations of add() calls
+   *
+   * @return the latency histogram of add(), in nanoseconds
+   */
+  public Histogram getAddLatency() {
+    return addLatency;
+  }
+
+  /**
+   * Returns the histogram of the durations of addAll() and addAllParallel() calls
+   *
+   * @return the latency histogram of batches, in nanoseconds
+   */
+  public Histogram getBatchLatency() {
+    return batchLatency;
+  }
+
+  /**
+   * Returns the histogram of the number of levels moved per percolation
+   *
+   * @return the sift depth histogram
+   */
+  public Histogram getSiftDepth() {
+    return siftDepth;
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * The management interface of IntakeMetrics, as exposed through JMX. Latencies are in
+ * nanoseconds.
+ */
+public interface IntakeMetricsMXBean {
+  /**
+   * @return the number of Applications added to a priority queue
+   */
+  long getAccepted();
+
+  /**
+   * @return the number of Applications which were not added to a priority queue
+   */
+  long getRejected();
+
+  /**
+   * @return the number of Applications evicted by a better one
+   */
+  long getEvicted();
+
+  /**
+   * @return the number of add() calls on a full position, which must compare with the lowest
+   *         Application
+   */
+  long getFullQueueOffers();
+
+  /**
+   * @return the number of addAll() and addAllParallel() calls
+   */
+  long getBatches();
+
+  /**
+   * @return the number of listings of the Applications of a position
+   */
+  long getIterations();
+
+  /**
+   * @return the latest cut-off score, or -1 while there are vacancies
+   */
+  int getCutoffScore();
+
+  /**
+   * @return the number of times the cut-off score went up
+   */
+  long getCutoffRaises();
+
+  /**
+   * @return the median duration of add() calls
+   */
+  long getAddLatencyP50();
+
+  /**
+   * @return the 99th percentile of the duration of add() calls
+   */
+  long getAddLatencyP99();
+
+  /**
+   * @return the 99.9th percentile of the duration of add() calls
+   */
+  long getAddLatencyP999();
+
+  /**
+   * @return the 99th percentile of the duration of addAll() and addAllParallel() calls
+   */
+  long getBatchLatencyP99();
+
+  /**
+   * @return the mean number of levels moved per percolation of a heap
+   */
+  double getMeanSiftDepth();
+
+  /**
+   * @return the 99th percentile of the number of levels moved per percolation of a heap
+   */
+  long getSiftDepthP99();
+}
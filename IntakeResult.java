@@ -0,0 +1,64 @@
+/**
+ * Summarizes what happened to a batch of Applications offered to an OpenPosition: how many of them
+ * were accepted into the shortlist, how many were turned away, and how many previously
+ * shortlisted Applications had to be evicted to make room.
+ */
+public class IntakeResult {
+  private final long accepted; // applications of the batch added to the shortlist
+  private final long rejected; // applications of the batch which were not added
+  private final long evicted; // applications removed from the shortlist to make room
+
+  /**
+   * Creates a new IntakeResult with the given counts
+   * 
+   * @param accepted number of Applications of the batch added to the shortlist
+   * @param rejected number of Applications of the batch which were not added
+   * @param evicted  number of Applications removed from the shortlist to make room
+   */
+  public IntakeResult(long accepted, long rejected, long evicted) {
+    this.accepted = accepted;
+    this.rejected = rejected;
+    this.evicted = evicted;
+  }
+
+  /**
+   * Returns the number of Applications of the batch that were added to the shortlist. An
+   * Application added by OpenPosition.add() and then replaced by a better one is counted as
+   * accepted. OpenPosition.addAll() filters its batch before adding it, so an Application which
+   * a better one of the same batch would have replaced is counted as rejected instead: the
+   * accepted count minus the evicted count does not depend on how the batch was added.
+   * 
+   * @return the number of accepted Applications
+   */
+  public long getAccepted() {
+    return accepted;
+  }
+
+  /**
+   * Returns the number of Applications of the batch that were not added to the shortlist
+   * 
+   * @return the number of rejected Applications
+   */
+  public long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Returns the number of Applications removed from the shortlist to make room for better ones
+   * 
+   * @return the number of evicted Applications
+   */
+  public long getEvicted() {
+    return evicted;
+  }
+
+  /**
+   * Returns a String representing this IntakeResult
+   * 
+   * @return a String representing this IntakeResult
+   */
+  @Override
+  public String toString() {
+    return "accepted:" + accepted + ":rejected:" + rejected + ":evicted:" + evicted;
+  }
+}
@@ -0,0 +1,441 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An embedded intake service, which receives Applications over a line protocol on a localhost
+ * socket and adds them to registered OpenPositions.
+ *
+ * Each request is a line "position,name,email,score", answered by a line holding one of:
+ * <ul>
+ * <li>OK: the Application was queued for the position</li>
+ * <li>REJECTED: the score is below the cut-off score of the position</li>
+ * <li>BUSY: the mailbox of the position is full, and the request should be retried later</li>
+ * <li>UNKNOWN: no position with this name is registered</li>
+ * <li>ERROR: the line is not a valid Application</li>
+ * </ul>
+ * Requests can be pipelined: responses are flushed once no other request is waiting.
+ *
+ * Each position has a bounded mailbox, drained into batches for OpenPosition.addAll() by a fixed
+ * pool of platform writer threads. A mailbox is handed to a writer only while it holds
+ * Applications, one batch at a time and never to two writers at once, so no lock is needed on the
+ * heap of its position, and any number of positions share the same writers. A batch which fails,
+ * e.g. because an IntakeListener of the position cannot write its journal, does not stop the
+ * writers: its Applications are counted by getFailedCount(), and the failure is returned by
+ * getLastFailure().
+ *
+ * Connections are served by one thread each. These are virtual threads on JDK 21 and later, which
+ * has Executors.newVirtualThreadPerTaskExecutor(), and a cached pool of platform threads on older
+ * runtimes, where each open connection holds a platform thread. Registered positions must only be
+ * modified through this server, and only read once it is closed.
+ */
+public class IntakeServer implements Closeable {
+  private static final int BACKLOG = 4096; // pending connections the server socket accepts
+  private static final int MAX_BATCH = 1 << 12; // largest batch passed to addAll()
+
+  private final ServerSocket serverSocket;
+  private final int mailboxCapacity; // number of Applications each mailbox can hold
+  private final ConcurrentHashMap<String, Mailbox> mailboxes; // mailboxes by position name
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet(); // open connections
+  private final ExecutorService connectionThreads; // runs the acceptor and the connections
+  private final ExecutorService writerThreads; // drains the mailboxes holding Applications
+  private final LongAdder busy = new LongAdder(); // requests answered with BUSY
+  private final LongAdder failed = new LongAdder(); // Applications of the failed batches
+  private volatile RuntimeException lastFailure; // the last failure of a batch, if any
+  private boolean started;
+  private boolean closed;
+
+  /**
+   * The bounded queue of Applications waiting to be added to a position
+   */
+  private static class Mailbox {
+    private final OpenPosition position;
+    private final ArrayBlockingQueue<Application> queue;
+    private final AtomicBoolean scheduled = new AtomicBoolean(); // true while handed to a writer
+    private volatile int cutoff; // cut-off score of the position after the last batch
+
+    private Mailbox(OpenPosition position, int capacity) {
+      this.position = position;
+      this.queue = new ArrayBlockingQueue<Application>(capacity);
+      this.cutoff = position.getCutoffScore();
+    }
+  }
+
+  /**
+   * Creates a new IntakeServer listening on the given port of the loopback interface, with one
+   * writer thread per available processor. The server does not accept connections until start()
+   * is called.
+   *
+   * @param port            the port to listen on, or 0 for any free port
+   * @param mailboxCapacity number of Applications each position can have waiting
+   * @throws IllegalArgumentException with a descriptive error message if the mailbox capacity is
+   *                                  not a positive integer, or the port is out of range
+   * @throws IOException              if the server socket cannot be bound
+   */
+  public IntakeServer(int port, int mailboxCapacity) throws IllegalArgumentException, IOException {
+    this(port, mailboxCapacity, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a new IntakeServer listening on the given port of the loopback interface. The server
+   * does not accept connections until start() is called.
+   *
+   * @param port            the port to listen on, or 0 for any free port
+   * @param mailboxCapacity number of Applications each position can have waiting
+   * @param writers         number of platform threads adding Applications to the positions
+   * @throws IllegalArgumentException with a descriptive error message if the mailbox capacity or
+   *                                  the number of writers is not a positive integer, or the port
+   *                                  is out of range
+   * @throws IOException              if the server socket cannot be bound
+   */
+  public IntakeServer(int port, int mailboxCapacity, int writers)
+      throws IllegalArgumentException, IOException {
+    this(port, mailboxCapacity, writers, true);
+  }
+
+  /**
+   * Creates a new IntakeServer, which serves connections on platform threads if virtual threads
+   * are not allowed
+   *
+   * @param port            the port to listen on, or 0 for any free port
+   * @param mailboxCapacity number of Applications each position can have waiting
+   * @param writers         number of platform threads adding Applications to the positions
+   * @param virtualThreads  false to serve connections on platform threads even on JDK 21 and later
+   * @throws IllegalArgumentException with a descriptive error message if the mailbox capacity or
+   *                                  the number of writers is not a positive integer, or the port
+   *                                  is out of range
+   * @throws IOException              if the server socket cannot be bound
+   */
+  IntakeServer(int port, int mailboxCapacity, int writers, boolean virtualThreads)
+      throws IllegalArgumentException, IOException {
+    if (mailboxCapacity <= 0) {
+      throw new IllegalArgumentException("invalid mailbox capacity");
+    }
+    if (writers <= 0) {
+      throw new IllegalArgumentException("invalid number of writers");
+    }
+    this.mailboxCapacity = mailboxCapacity;
+    this.mailboxes = new ConcurrentHashMap<String, Mailbox>();
+    this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    ExecutorService virtual = virtualThreads ? newVirtualExecutor() : null;
+    this.connectionThreads = virtual != null ? virtual
+        : Executors.newCachedThreadPool(threadFactory("intake-connection-"));
+    this.writerThreads = Executors.newFixedThreadPool(writers, threadFactory("intake-writer-"));
+  }
+
+  /**
+   * Returns an executor running each task in a new virtual thread. This needs JDK 21 or later, and
+   * is looked up reflectively so that the server also runs on older runtimes.
+   *
+   * @return the new executor, or null if the runtime has no virtual threads
+   */
+  private static ExecutorService newVirtualExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a factory of daemon platform threads named with the given prefix and a number, so
+   * that a server which was never closed does not keep the JVM running
+   *
+   * @param prefix the prefix of the thread names
+   * @return the new thread factory
+   */
+  private static ThreadFactory threadFactory(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return task -> {
+      Thread thread = new Thread(task, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Returns the port this server listens on
+   *
+   * @return the local port of the server socket
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Returns the number of requests answered with BUSY, i.e. refused because a mailbox was full
+   *
+   * @return the number of BUSY responses so far
+   */
+  public long getBusyCount() {
+    return busy.sum();
+  }
+
+  /**
+   * Returns the number of queued Applications which may not have been added to their position,
+   * because their batch failed or no writer was left to add them
+   *
+   * @return the number of Applications of the failed batches so far
+   */
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  /**
+   * Returns the exception thrown by the last batch which failed
+   *
+   * @return the last failure of a batch, or null if no batch failed
+   */
+  public RuntimeException getLastFailure() {
+    return lastFailure;
+  }
+
+  /**
+   * Registers the given position, which receives the Applications submitted under its name from
+   * now on
+   *
+   * @param position the position to register
+   * @throws NullPointerException     if the position is null
+   * @throws IllegalArgumentException with a descriptive error message if a position with the same
+   *                                  name is already registered
+   * @throws IllegalStateException    with a descriptive error message if this server is closed
+   */
+  public synchronized void register(OpenPosition position)
+      throws NullPointerException, IllegalArgumentException, IllegalStateException {
+    if (position == null) {
+      throw new NullPointerException("position is null");
+    }
+    if (closed) {
+      throw new IllegalStateException("server is closed");
+    }
+    Mailbox mailbox = new Mailbox(position, mailboxCapacity);
+    if (mailboxes.putIfAbsent(position.getPositionName(), mailbox) != null) {
+      throw new IllegalArgumentException("duplicate position");
+    }
+  }
+
+  /**
+   * Starts accepting connections
+   *
+   * @throws IllegalStateException with a descriptive error message if this server was already
+   *                               started, or is closed
+   */
+  public synchronized void start() throws IllegalStateException {
+    if (started || closed) {
+      throw new IllegalStateException("server already started");
+    }
+    started = true;
+    connectionThreads.execute(this::accept);
+  }
+
+  /**
+   * Accepts connections until the server socket is closed
+   */
+  private void accept() {
+    while (true) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        return; // the server socket was closed
+      }
+      connections.add(socket);
+      try {
+        // close() may have missed this connection when closing the open ones
+        if (serverSocket.isClosed()) {
+          throw new RejectedExecutionException("server is closed");
+        }
+        connectionThreads.execute(() -> serve(socket));
+      } catch (RejectedExecutionException e) {
+        connections.remove(socket);
+        try {
+          socket.close();
+        } catch (IOException ignored) {
+          // nothing was written to this connection
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Answers the requests of the given connection until the client closes it
+   *
+   * @param socket the connection to serve
+   */
+  private void serve(Socket socket) {
+    try (socket;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        out.write(submit(line));
+        out.write('\n');
+        // pipelined requests get their responses in a single write
+        if (!in.ready()) {
+          out.flush();
+        }
+      }
+    } catch (IOException e) {
+      // the connection was closed by the client or by close()
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Queues the Application described by the given request for its position
+   *
+   * @param line the request, "position,name,email,score"
+   * @return the response to the request
+   */
+  String submit(String line) {
+    int first = line.indexOf(',');
+    int last = line.lastIndexOf(',');
+    int email = last < 0 ? -1 : line.lastIndexOf(',', last - 1);
+    if (first < 0 || email <= first) {
+      return "ERROR";
+    }
+    Mailbox mailbox = mailboxes.get(line.substring(0, first));
+    if (mailbox == null) {
+      return "UNKNOWN";
+    }
+    int score;
+    try {
+      score = Integer.parseInt(line.substring(last + 1).trim());
+    } catch (NumberFormatException e) {
+      return "ERROR";
+    }
+    if (score < 0 || score > Application.MAX_SCORE) {
+      return "ERROR";
+    }
+    // reject before building the Application when it cannot beat the cut-off score
+    if (score < mailbox.cutoff) {
+      return "REJECTED";
+    }
+    Application application;
+    try {
+      application = new Application(line.substring(first + 1, email),
+          line.substring(email + 1, last), score);
+    } catch (IllegalArgumentException e) {
+      return "ERROR";
+    }
+    if (!mailbox.queue.offer(application)) {
+      busy.increment();
+      return "BUSY";
+    }
+    schedule(mailbox);
+    return "OK";
+  }
+
+  /**
+   * Hands the given mailbox to a writer, unless a writer already has it
+   *
+   * @param mailbox the mailbox holding Applications
+   */
+  private void schedule(Mailbox mailbox) {
+    if (mailbox.scheduled.compareAndSet(false, true)) {
+      try {
+        writerThreads.execute(() -> write(mailbox));
+      } catch (RejectedExecutionException e) {
+        // the server is closed: close() counts the Applications left in the mailbox as failed
+        mailbox.scheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Adds one batch of the given mailbox to its position, then hands the mailbox to a writer again
+   * if it still holds Applications, after the mailboxes already waiting for a writer
+   *
+   * @param mailbox the mailbox to drain
+   */
+  private void write(Mailbox mailbox) {
+    ArrayList<Application> batch = new ArrayList<Application>();
+    mailbox.queue.drainTo(batch, MAX_BATCH);
+    try {
+      if (!batch.isEmpty()) {
+        mailbox.position.addAll(batch);
+      }
+    } catch (RuntimeException e) {
+      // part of the batch may have been added, but the mailbox is still drained
+      failed.add(batch.size());
+      lastFailure = e;
+    } finally {
+      mailbox.cutoff = mailbox.position.getCutoffScore();
+      synchronized (mailbox) {
+        mailbox.scheduled.set(false);
+        // an Application queued before scheduled was cleared found the mailbox still scheduled
+        if (!mailbox.queue.isEmpty()) {
+          schedule(mailbox);
+        }
+        mailbox.notifyAll(); // close() waits until the mailbox is no longer scheduled
+      }
+    }
+  }
+
+  /**
+   * Stops accepting connections, closes the open ones, and waits until every queued Application
+   * was added to its position. The positions can then be read safely. The Applications which could
+   * not be handed to a writer any more are counted as failed.
+   *
+   * @throws IOException if the server socket cannot be closed, or this thread is interrupted while
+   *                     waiting
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    serverSocket.close();
+    connectionThreads.shutdown();
+    for (Socket socket : connections) {
+      socket.close();
+    }
+    try {
+      connectionThreads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      // no connection queues Applications any more, so the writers only drain what is left
+      for (Mailbox mailbox : mailboxes.values()) {
+        synchronized (mailbox) {
+          while (mailbox.scheduled.get()) {
+            mailbox.wait();
+          }
+        }
+      }
+      writerThreads.shutdown();
+      writerThreads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      for (Mailbox mailbox : mailboxes.values()) {
+        failed.add(mailbox.queue.size());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while closing", e);
+    }
+  }
+}
@@ -0,0 +1,264 @@
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Routes Applications to many OpenPositions at once. The engine keeps an index of the positions
+ * by their cut-off score, so that an Application is only offered to the positions it can get
+ * into: the positions whose cut-off score is higher than its score are never looked at.
+ *
+ * The index has one level per possible cut-off score (-1 for positions with vacancies, then 0 ..
+ * 100), and a bitmap of the non-empty levels. Routing an Application with score s walks the
+ * non-empty levels from s down to -1, so the positions with the highest cut-off scores it can
+ * beat, i.e. the most selective ones, are offered the Application first.
+ *
+ * Optionally, the number of positions an applicant is kept in can be limited. Applicants are then
+ * identified by their email, and the engine keeps track of the positions evicting them, so that
+ * they can be placed again later. The positions of an engine must only receive Applications
+ * through it, or be refreshed with refresh() after being modified directly.
+ */
+public class MatchingEngine {
+  private static final int LEVELS = Application.MAX_SCORE + 2; // cut-off scores -1 .. 100
+  private static final int INITIAL_LENGTH = 16; // length of the arrays when created
+
+  private OpenPosition[] positions; // positions[id] is the position with this id
+  private int[] levels; // levels[id] is the level of position id, i.e. its cut-off score + 1
+  private int[] slots; // slots[id] is the index of position id in members[levels[id]]
+  private int[][] members; // members[level] lists the ids of the positions at this level
+  private int[] memberCounts; // memberCounts[level] is the number of positions at this level
+  private long[] occupied; // bit level is set when members[level] is not empty
+  private int size; // number of positions in this engine
+  private int maxPlacements; // maximum number of positions an applicant is kept in
+  private HashMap<String, Integer> placements; // number of positions keeping each applicant
+
+  /**
+   * Creates a new empty MatchingEngine which offers each Application to every position it can get
+   * into.
+   */
+  public MatchingEngine() {
+    positions = new OpenPosition[INITIAL_LENGTH];
+    levels = new int[INITIAL_LENGTH];
+    slots = new int[INITIAL_LENGTH];
+    members = new int[LEVELS][];
+    memberCounts = new int[LEVELS];
+    occupied = new long[(LEVELS + 63) / 64];
+    size = 0;
+    maxPlacements = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Creates a new empty MatchingEngine which keeps each applicant in at most the given number of
+   * positions.
+   *
+   * @param maxPlacements maximum number of positions an applicant is kept in
+   * @throws IllegalArgumentException with a descriptive error message if maxPlacements is not a
+   *                                  positive integer
+   */
+  public MatchingEngine(int maxPlacements) throws IllegalArgumentException {
+    this();
+    if (maxPlacements <= 0) {
+      throw new IllegalArgumentException("invalid number of placements");
+    }
+    this.maxPlacements = maxPlacements;
+    this.placements = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Adds the given position to this engine. If the engine limits the number of placements of each
+   * applicant, the applicants already kept by the position count towards their limit.
+   *
+   * @param position the position to add
+   * @return the id of the position in this engine
+   * @throws NullPointerException if the position is null
+   */
+  public int addPosition(OpenPosition position) throws NullPointerException {
+    if (position == null) {
+      throw new NullPointerException("position is null");
+    }
+    if (size == positions.length) {
+      int length = size * 2;
+      OpenPosition[] grown = new OpenPosition[length];
+      System.arraycopy(positions, 0, grown, 0, size);
+      positions = grown;
+      int[] grownLevels = new int[length];
+      System.arraycopy(levels, 0, grownLevels, 0, size);
+      levels = grownLevels;
+      int[] grownSlots = new int[length];
+      System.arraycopy(slots, 0, grownSlots, 0, size);
+      slots = grownSlots;
+    }
+    int id = size++;
+    positions[id] = position;
+    insert(id, position.getCutoffScore() + 1);
+    if (placements != null) {
+      for (Application a : position.shortlist()) {
+        placements.merge(a.getEmail(), 1, Integer::sum);
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Returns the position with the given id
+   *
+   * @param id id of the position, as returned by addPosition()
+   * @return the position with this id
+   * @throws IndexOutOfBoundsException if no position has this id
+   */
+  public OpenPosition getPosition(int id) throws IndexOutOfBoundsException {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("invalid position id");
+    }
+    return positions[id];
+  }
+
+  /**
+   * Returns the number of positions in this engine
+   *
+   * @return the number of positions in this engine
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Updates the index after the position with the given id was modified outside this engine
+   *
+   * @param id id of the position, as returned by addPosition()
+   * @throws IndexOutOfBoundsException if no position has this id
+   */
+  public void refresh(int id) throws IndexOutOfBoundsException {
+    move(id, getPosition(id).getCutoffScore() + 1);
+  }
+
+  /**
+   * Offers the given Application to the positions it can get into, starting with the most
+   * selective ones, until it is kept by as many positions as allowed.
+   *
+   * @param application the Application to route
+   * @return the number of positions which added the Application
+   * @throws NullPointerException if the Application is null
+   */
+  public int route(Application application) throws NullPointerException {
+    String email = application.getEmail();
+    int placed = 0;
+    if (placements != null) {
+      placed = placements.getOrDefault(email, 0);
+    }
+    int added = 0;
+    int level = highestLevelAtMost(application.getScore() + 1);
+    while (level >= 0 && placed < maxPlacements) {
+      // walk the level backwards, so that positions moving to a higher level are not met again
+      for (int i = memberCounts[level] - 1; i >= 0 && placed < maxPlacements; i--) {
+        int id = members[level][i];
+        OpenPosition position = positions[id];
+        boolean full = position.isFull();
+        Application lowest = full ? position.shortlist().peek() : null;
+        if (position.add(application)) {
+          added++;
+          placed++;
+          if (placements != null && full) {
+            // the evicted applicant can be placed somewhere else again
+            placements.computeIfPresent(lowest.getEmail(),
+                (key, count) -> count > 1 ? count - 1 : null);
+          }
+          move(id, position.getCutoffScore() + 1);
+        }
+      }
+      level = highestLevelAtMost(level - 1);
+    }
+    if (placements != null && added > 0) {
+      placements.put(email, placed);
+    }
+    return added;
+  }
+
+  /**
+   * Routes every Application of the given batch, in iteration order
+   *
+   * @param batch the Applications to route
+   * @return the total number of placements of the Applications of the batch
+   * @throws NullPointerException if the batch or any of its Applications is null
+   */
+  public long routeAll(Collection<Application> batch) throws NullPointerException {
+    long added = 0;
+    for (Application a : batch) {
+      added += route(a);
+    }
+    return added;
+  }
+
+  /**
+   * Returns the highest non-empty level lower than or equal to the given level
+   *
+   * @param level the highest level to consider
+   * @return the highest non-empty level, or -1 if there is none
+   */
+  private int highestLevelAtMost(int level) {
+    if (level >= LEVELS) {
+      level = LEVELS - 1;
+    }
+    for (int word = level >> 6; word >= 0 && level >= 0; word--) {
+      long bits = occupied[word];
+      if (word == level >> 6) {
+        // ignore the levels above the given one
+        bits &= -1L >>> (63 - (level & 63));
+      }
+      if (bits != 0) {
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Moves the position with the given id to the given level, if it is not already there
+   *
+   * @param id    id of the position
+   * @param level its new level
+   */
+  private void move(int id, int level) {
+    if (levels[id] != level) {
+      remove(id);
+      insert(id, level);
+    }
+  }
+
+  /**
+   * Adds the position with the given id to the given level
+   *
+   * @param id    id of the position
+   * @param level level to add it to
+   */
+  private void insert(int id, int level) {
+    int[] levelMembers = members[level];
+    if (levelMembers == null) {
+      levelMembers = new int[INITIAL_LENGTH];
+      members[level] = levelMembers;
+    } else if (memberCounts[level] == levelMembers.length) {
+      int[] grown = new int[levelMembers.length * 2];
+      System.arraycopy(levelMembers, 0, grown, 0, levelMembers.length);
+      levelMembers = grown;
+      members[level] = levelMembers;
+    }
+    slots[id] = memberCounts[level];
+    levelMembers[memberCounts[level]++] = id;
+    levels[id] = level;
+    occupied[level >> 6] |= 1L << level;
+  }
+
+  /**
+   * Removes the position with the given id from its level, moving the last position of the level
+   * to its slot
+   *
+   * @param id id of the position
+   */
+  private void remove(int id) {
+    int level = levels[id];
+    int last = members[level][--memberCounts[level]];
+    members[level][slots[id]] = last;
+    slots[last] = slots[id];
+    if (memberCounts[level] == 0) {
+      occupied[level >> 6] &= ~(1L << level);
+    }
+  }
+}
@@ -1,11 +1,31 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
 /**
  * A application handler of an open position using priority queue. Only saves a new Application when
  * the queue is not full, or when it can replace older, lower-scored ones with its higher scores.
+ * 
+ * The total score and a histogram of the scores of the saved Applications are updated every time
+ * an Application is saved or replaced, so that the statistics of the shortlist are available in
+ * constant time.
  */
 public class OpenPosition {
+  private static final int MIN_PARALLEL_LEAF_SIZE = 1 << 13; // smallest range selected by a task
+  private static final IntakeListener[] NO_LISTENERS = new IntakeListener[0];
+
   private String positionName;
-  private ApplicationQueue applications; // the priority queue of all applications
+  private ShortlistQueue applications; // the priority queue of all applications
   private int capacity; // the number of vacancies
+  private long totalScore; // sum of the scores of all applications in the queue
+  private int[] scoreCounts = new int[Application.MAX_SCORE + 1]; // applications per score
+  private IntakeListener[] listeners = NO_LISTENERS; // notified of every change of the queue
+  private IntakeMetrics metrics; // measures the intake of this position, if not null
+  private boolean rankedByScore = true; // false if the queue is ordered by a custom RankKey
 
   /**
    * Creates a new open position with the given capacity
@@ -23,31 +43,773 @@ public class OpenPosition {
     applications = new ApplicationQueue(capacity);
   }
 
+  /**
+   * Creates a new open position with the given capacity, which orders applications with the same
+   * score according to the given tie-break. With a tie-break other than TieBreak.NONE, the
+   * applications kept by this position do not depend on the layout of its heap, so adding the
+   * same applications in the same order always gives the same shortlist.
+   * 
+   * @param capacity the number of vacancies of this position
+   * @param tieBreak how applications with the same score are ordered
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   * @throws NullPointerException     if the tie-break is null
+   */
+  public OpenPosition(String positionName, int capacity, TieBreak tieBreak)
+      throws IllegalArgumentException, NullPointerException {
+    this(positionName, new ApplicationQueue(capacity, tieBreak));
+  }
+
+  /**
+   * Creates a new open position which keeps its applications in the given queue. The number of
+   * vacancies of this position is the capacity of the queue. For instance, a
+   * BucketApplicationQueue can be used in place of the default heap.
+   * 
+   * @param applications the queue holding the applications of this position
+   * @throws NullPointerException if the given queue is null
+   */
+  public OpenPosition(String positionName, ShortlistQueue applications)
+      throws NullPointerException {
+    if (applications == null) {
+      throw new NullPointerException("queue is null");
+    }
+    this.positionName = positionName;
+    this.capacity = applications.capacity();
+    this.applications = applications;
+    this.rankedByScore = !(applications instanceof ApplicationQueue)
+        || ((ApplicationQueue) applications).getTieBreak() != null;
+    // the order does not matter, so the queue is traversed in its cheapest order
+    applications.spliterator().forEachRemaining(this::record);
+  }
+
   public String getPositionName() {
     return this.positionName;
   }
 
+  /**
+   * Registers the given listener, which is notified of every Application added to or removed from
+   * the priority queue of this position from now on.
+   * 
+   * @param listener the listener to register
+   * @throws NullPointerException if the listener is null
+   */
+  public void addIntakeListener(IntakeListener listener) throws NullPointerException {
+    if (listener == null) {
+      throw new NullPointerException("listener is null");
+    }
+    IntakeListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+    grown[listeners.length] = listener;
+    listeners = grown;
+  }
+
+  /**
+   * Unregisters the given listener, if it was registered
+   * 
+   * @param listener the listener to unregister
+   * @return {@code true} if the listener was registered
+   */
+  public boolean removeIntakeListener(IntakeListener listener) {
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i] == listener) {
+        IntakeListener[] shrunk = new IntakeListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, shrunk, 0, i);
+        System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+        listeners = shrunk.length == 0 ? NO_LISTENERS : shrunk;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sets the metrics measuring the intake of this position from now on. Without metrics, the
+   * intake is not measured at all, so that it only costs a null check per call.
+   * 
+   * @param metrics the metrics to update, or null to stop measuring
+   */
+  public void setMetrics(IntakeMetrics metrics) {
+    this.metrics = metrics;
+    if (applications instanceof ApplicationQueue) {
+      ((ApplicationQueue) applications).setMetrics(metrics);
+    }
+  }
+
+  /**
+   * Returns the metrics measuring the intake of this position
+   * 
+   * @return the metrics of this position, or null if its intake is not measured
+   */
+  public IntakeMetrics getMetrics() {
+    return metrics;
+  }
+
   /**
    * Tries to add the given Application to the priority queue of this position. return False when
-   * the new Application has a lower score than the lowest-scored Application in the queue.
+   * the new Application has a lower score than the lowest-scored Application in the queue, or
+   * when the queue is indexed and already holds an Application with the same email. If an
+   * IntakeListener fails, the Application is still added, and the exception is thrown once every
+   * listener was notified.
    * 
    * @return Whether the given Application was added successfully
    */
   public boolean add(Application application) {
-    // if the queue is full, determine whether this application has a higher score than
-    // the current lowest-scoring application; if not, do not add it
-    try {
+    if (metrics == null) {
+      return offer(application);
+    }
+    boolean full = applications.size() == capacity;
+    long start = System.nanoTime();
+    boolean added = offer(application);
+    metrics.recordAdd(added, full, System.nanoTime() - start, getCutoffScore());
+    return added;
+  }
+
+  /**
+   * Tries to add the given Application to the priority queue of this position, without measuring
+   * it.
+   * 
+   * @param application the Application to add
+   * @return Whether the given Application was added successfully
+   */
+  private boolean offer(Application application) {
+    // an indexed queue holds a single Application per email
+    if (isDuplicate(application)) {
+      return false;
+    }
+    // if there is a vacancy, the application is always added
+    if (applications.size() < capacity) {
       applications.enqueue(application);
+      record(application);
       return true;
-    } catch (IllegalStateException e) {
-      // if this application has a higher score than lowest-scoring app, add it to the queue
-      if (applications.peek().compareTo(application) < 0) {
-        applications.dequeue();
-        applications.enqueue(application);
-        return true;
+    }
+    // otherwise, it replaces the lowest-scoring application only if it has a higher score,
+    // which is checked on the score alone before the root is read
+    if (!mayAccept(application.getScore())) {
+      return false;
+    }
+    Application lowest = applications.peek();
+    if (applications.offerIfBetter(application)) {
+      replaced(lowest, application);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Removes the Application with the given email from this position, e.g. after the applicant
+   * withdrew. This frees a vacancy, so the cut-off score goes back to -1. The priority queue of
+   * this position must be an IndexedApplicationQueue.
+   * 
+   * @param email the email of the applicant to remove
+   * @return {@code true} if an Application with this email was removed
+   * @throws UnsupportedOperationException if the priority queue of this position is not indexed
+   */
+  public boolean withdraw(String email) throws UnsupportedOperationException {
+    Application removed = indexed().remove(email);
+    if (removed == null) {
+      return false;
+    }
+    forget(removed);
+    return true;
+  }
+
+  /**
+   * Changes the score of the Application with the given email, e.g. after it was re-evaluated.
+   * Applications which were rejected or evicted before are not considered again, even if the new
+   * score is lower than theirs. The priority queue of this position must be an
+   * IndexedApplicationQueue.
+   * 
+   * @param email the email of the applicant to rescore
+   * @param score the new score of the applicant
+   * @return {@code true} if an Application with this email was rescored
+   * @throws UnsupportedOperationException if the priority queue of this position is not indexed
+   * @throws IllegalArgumentException      with a descriptive error message if the score is not in
+   *                                       the 0 .. 100 range
+   */
+  public boolean updateScore(String email, int score)
+      throws UnsupportedOperationException, IllegalArgumentException {
+    IndexedApplicationQueue indexed = indexed();
+    Application old = indexed.updateScore(email, score);
+    if (old == null) {
+      return false;
+    }
+    replaced(old, indexed.get(email));
+    return true;
+  }
+
+  /**
+   * Removes every Application matching the given predicate from this position, e.g. all the
+   * applicants from a given domain. With an ApplicationQueue, the matching Applications are only
+   * marked as removed, and the heap is compacted in linear time once enough of them are; any
+   * other priority queue is drained and refilled with the remaining Applications.
+   * 
+   * @param filter the predicate telling which Applications to remove
+   * @return the number of removed Applications
+   * @throws NullPointerException if the predicate is null
+   */
+  public int removeIf(Predicate<? super Application> filter) throws NullPointerException {
+    if (filter == null) {
+      throw new NullPointerException("filter is null");
+    }
+    ArrayList<Application> removed = new ArrayList<Application>();
+    if (applications instanceof ApplicationQueue) {
+      ((ApplicationQueue) applications).removeIf(a -> filter.test(a) && removed.add(a));
+    } else {
+      ArrayList<Application> kept = new ArrayList<Application>();
+      while (!applications.isEmpty()) {
+        Application a = applications.dequeue();
+        if (filter.test(a)) {
+          removed.add(a);
+        } else {
+          kept.add(a);
+        }
       }
+      // enqueued from the highest priority down, so that ties keep their order
+      for (int i = kept.size() - 1; i >= 0; i--) {
+        applications.enqueue(kept.get(i));
+      }
+    }
+    // the statistics match the queue again before any listener is called
+    for (Application a : removed) {
+      count(a, -1);
+    }
+    RuntimeException failure = null;
+    for (Application a : removed) {
+      failure = notifyListeners(a, null, failure);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return removed.size();
+  }
+
+  /**
+   * Removes the Application at the root of the priority queue of this position, i.e. the next one
+   * to be evicted, if it matches the given predicate. This is how an eviction is replayed without
+   * scanning the whole queue.
+   * 
+   * @param filter the predicate the root must match
+   * @return {@code true} if the root was removed
+   */
+  boolean removeLowestIf(Predicate<? super Application> filter) {
+    if (applications.isEmpty()) {
       return false;
     }
+    Application lowest = applications.peek();
+    if (!filter.test(lowest)) {
+      return false;
+    }
+    applications.dequeue();
+    forget(lowest);
+    return true;
+  }
+
+  /**
+   * Returns the priority queue of this position, if it is indexed by email
+   * 
+   * @return the indexed priority queue of this position
+   * @throws UnsupportedOperationException if the priority queue of this position is not indexed
+   */
+  private IndexedApplicationQueue indexed() throws UnsupportedOperationException {
+    if (!(applications instanceof IndexedApplicationQueue)) {
+      throw new UnsupportedOperationException("queue is not indexed");
+    }
+    return (IndexedApplicationQueue) applications;
+  }
+
+  /**
+   * Tries to add every Application of the given batch to the priority queue of this position, in
+   * iteration order. See addAll(Application[], int, int) for what is guaranteed, and how the batch
+   * is counted.
+   * 
+   * @param batch the Applications to add
+   * @return how many Applications of the batch were accepted and rejected, and how many
+   *         Applications were evicted from the priority queue
+   * @throws NullPointerException if the batch or any of its Applications is null. In this case,
+   *                              no Application is added.
+   */
+  public IntakeResult addAll(Collection<Application> batch) throws NullPointerException {
+    Application[] array = batch.toArray(new Application[0]);
+    return addAll(array, 0, array.length);
+  }
+
+  /**
+   * Tries to add the Applications from index from (inclusive) to index to (exclusive) of the given
+   * array to the priority queue of this position. The array is not modified. The priority queue
+   * ends up holding the same scores as if add() was called on each of them in order. It holds the
+   * same Applications only when the tie-break orders every two of them, i.e. with ARRIVAL, or
+   * with NAME or EMAIL when no two Applications with the same score have the same name or email:
+   * otherwise, which of several tied Applications is kept depends on the layout of the heap, which
+   * the filtering below changes.
+   * 
+   * The whole batch is first filtered against the current cut-off score, and a histogram of the
+   * remaining scores tells which of them are among the best ones of the batch, so most rejected
+   * Applications never reach the priority queue. As a consequence, an Application which add()
+   * would have accepted, only for a better one of the same batch to evict it, is counted as
+   * rejected instead of accepted and evicted: the difference between the accepted and the
+   * evicted counts is the same as with add(), but both may be lower. When this position is empty,
+   * the selected Applications are added in increasing score order, so that only Applications
+   * tied with others on score may still percolate, when the tie-break orders them. When the
+   * priority queue is ordered by another RankKey than a TieBreak, the rank keys of the whole
+   * batch are computed at once by RankKey.keys() instead, and every Application is offered.
+   * 
+   * @param batch the array holding the Applications to add
+   * @param from  index of the first Application to add
+   * @param to    index after the last Application to add
+   * @return how many Applications of the batch were accepted and rejected, and how many
+   *         Applications were evicted from the priority queue
+   * @throws NullPointerException      if the array or any of the Applications to add is null. In
+   *                                   this case, no Application is added.
+   * @throws IndexOutOfBoundsException if from and to do not delimit a range of the array
+   */
+  public IntakeResult addAll(Application[] batch, int from, int to)
+      throws NullPointerException, IndexOutOfBoundsException {
+    if (metrics == null) {
+      return addBatch(batch, from, to);
+    }
+    long start = System.nanoTime();
+    IntakeResult result = addBatch(batch, from, to);
+    metrics.recordBatch(result, System.nanoTime() - start, getCutoffScore());
+    return result;
+  }
+
+  /**
+   * Tries to add the Applications from index from (inclusive) to index to (exclusive) of the given
+   * array, as addAll() does, without measuring the batch.
+   * 
+   * @param batch the array holding the Applications to add
+   * @param from  index of the first Application to add
+   * @param to    index after the last Application to add
+   * @return how many Applications of the batch were accepted and rejected, and how many
+   *         Applications were evicted from the priority queue
+   * @throws NullPointerException      if the array or any of the Applications to add is null
+   * @throws IndexOutOfBoundsException if from and to do not delimit a range of the array
+   */
+  private IntakeResult addBatch(Application[] batch, int from, int to)
+      throws NullPointerException, IndexOutOfBoundsException {
+    Objects.checkFromToIndex(from, to, batch.length);
+    if (!rankedByScore) {
+      return addRanked(batch, from, to);
+    }
+
+    // keep the Applications which can beat the current cut-off, and count them per score
+    int cutoff = getCutoffScore();
+    int[] counts = new int[Application.MAX_SCORE + 1];
+    int candidates = 0;
+    for (int i = from; i < to; i++) {
+      if (batch[i] == null) {
+        throw new NullPointerException("application is null");
+      }
+      if (batch[i].getScore() >= cutoff) {
+        counts[batch[i].getScore()]++;
+        candidates++;
+      }
+    }
+
+    // find the lowest score among the best capacity candidates: no Application with a lower
+    // score can end up in the priority queue
+    int threshold = 0;
+    if (candidates > capacity) {
+      int seen = 0;
+      threshold = Application.MAX_SCORE;
+      while ((seen += counts[threshold]) < capacity) {
+        threshold--;
+      }
+    }
+
+    // load() adds the batch at once, so it cannot skip the duplicate emails of the batch
+    if (applications.isEmpty() && !(applications instanceof IndexedApplicationQueue)) {
+      return load(batch, from, to, counts, threshold);
+    }
+
+    int lowest = Math.max(threshold, cutoff);
+    long accepted = 0;
+    long evicted = 0;
+    for (int i = from; i < to; i++) {
+      if (batch[i].getScore() >= lowest) {
+        boolean full = applications.size() == capacity;
+        if (offer(batch[i])) {
+          accepted++;
+          if (full) {
+            evicted++;
+          }
+        }
+      }
+    }
+    return new IntakeResult(accepted, (to - from) - accepted, evicted);
+  }
+
+  /**
+   * Tries to add the Applications from index from (inclusive) to index to (exclusive) of the given
+   * array to the priority queue of this position, using the common ForkJoinPool. The resulting
+   * priority queue holds the same scores as with addAll(), and the same Applications when the
+   * tie-break orders them completely: see addAllParallel(Application[], int, int, ForkJoinPool).
+   * 
+   * @param batch the array holding the Applications to add
+   * @param from  index of the first Application to add
+   * @param to    index after the last Application to add
+   * @return how many Applications of the batch were accepted and rejected, and how many
+   *         Applications were evicted from the priority queue
+   * @throws NullPointerException      if the array or any of the Applications to add is null. In
+   *                                   this case, no Application is added.
+   * @throws IndexOutOfBoundsException if from and to do not delimit a range of the array
+   */
+  public IntakeResult addAllParallel(Application[] batch, int from, int to)
+      throws NullPointerException, IndexOutOfBoundsException {
+    return addAllParallel(batch, from, to, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Tries to add the Applications from index from (inclusive) to index to (exclusive) of the given
+   * array to the priority queue of this position, using the given ForkJoinPool. The resulting
+   * priority queue always holds the same scores as with addAll(). It holds the same Applications
+   * only when no two of them are tied, i.e. when the tie-break is ARRIVAL, or NAME or EMAIL and no
+   * two Applications with the same score have the same name or email. Which of several tied
+   * Applications is kept depends on the layout of the heaps, which differs from the sequential
+   * one, e.g. with TieBreak.NONE, or TieBreak.NAME and repeated names.
+   * 
+   * The range is split into chunks, and the best Applications of each chunk are selected by a
+   * separate task with its own ApplicationQueue. The selections are merged pairwise, and only the
+   * Applications of the final selection are then added, in their order in the array. No other
+   * Application of the batch could have been kept, since at least capacity Applications of the
+   * batch rank higher.
+   * 
+   * @param batch the array holding the Applications to add
+   * @param from  index of the first Application to add
+   * @param to    index after the last Application to add
+   * @param pool  the ForkJoinPool running the selection tasks
+   * @return how many Applications of the batch were accepted and rejected, and how many
+   *         Applications were evicted from the priority queue
+   * @throws NullPointerException      if the array, the pool or any of the Applications to add is
+   *                                   null. In this case, no Application is added.
+   * @throws IndexOutOfBoundsException if from and to do not delimit a range of the array
+   */
+  public IntakeResult addAllParallel(Application[] batch, int from, int to, ForkJoinPool pool)
+      throws NullPointerException, IndexOutOfBoundsException {
+    if (metrics == null) {
+      return addParallel(batch, from, to, pool);
+    }
+    long start = System.nanoTime();
+    IntakeResult result = addParallel(batch, from, to, pool);
+    metrics.recordBatch(result, System.nanoTime() - start, getCutoffScore());
+    return result;
+  }
+
+  /**
+   * Tries to add the Applications from index from (inclusive) to index to (exclusive) of the given
+   * array using the given ForkJoinPool, as addAllParallel() does, without measuring the batch.
+   * 
+   * @param batch the array holding the Applications to add
+   * @param from  index of the first Application to add
+   * @param to    index after the last Application to add
+   * @param pool  the ForkJoinPool running the selection tasks
+   * @return how many Applications of the batch were accepted and rejected, and how many
+   *         Applications were evicted from the priority queue
+   * @throws NullPointerException      if the array, the pool or any of the Applications to add is
+   *                                   null
+   * @throws IndexOutOfBoundsException if from and to do not delimit a range of the array
+   */
+  private IntakeResult addParallel(Application[] batch, int from, int to, ForkJoinPool pool)
+      throws NullPointerException, IndexOutOfBoundsException {
+    Objects.checkFromToIndex(from, to, batch.length);
+    if (!rankedByScore || applications instanceof IndexedApplicationQueue) {
+      // the selection tasks rank Applications by score, and do not skip duplicate emails
+      return addBatch(batch, from, to);
+    }
+    int leafSize = Math.max(Math.max(MIN_PARALLEL_LEAF_SIZE, capacity),
+        (to - from) / (pool.getParallelism() * 4) + 1);
+    if (to - from <= leafSize) {
+      return addBatch(batch, from, to);
+    }
+
+    // the chunks rank Applications with the same score by arrival, unless this position ranks
+    // them by name or email
+    TieBreak tieBreak = TieBreak.ARRIVAL;
+    if (applications instanceof ApplicationQueue) {
+      TieBreak own = ((ApplicationQueue) applications).getTieBreak();
+      if (own == TieBreak.NAME || own == TieBreak.EMAIL) {
+        tieBreak = own;
+      }
+    }
+    ApplicationQueue best =
+        pool.invoke(new TopKTask(batch, from, to, capacity, tieBreak, getCutoffScore(), leafSize));
+
+    Application[] selected = new Application[best.size()];
+    if (tieBreak == TieBreak.ARRIVAL) {
+      // the rank keys hold the indexes of the Applications in the batch
+      int[] indexes = new int[best.size()];
+      for (int i = 0; i < indexes.length; i++) {
+        indexes[i] = (int) TieBreak.sequenceOf(best.keyAt(i));
+      }
+      Arrays.sort(indexes);
+      for (int i = 0; i < indexes.length; i++) {
+        selected[i] = batch[indexes[i]];
+      }
+    } else {
+      for (int i = 0; i < selected.length; i++) {
+        selected[i] = best.elementAt(i);
+      }
+    }
+    IntakeResult result = addBatch(selected, 0, selected.length);
+    return new IntakeResult(result.getAccepted(), (to - from) - result.getAccepted(),
+        result.getEvicted());
+  }
+
+  /**
+   * Tries to add the Applications from index from (inclusive) to index to (exclusive) of the given
+   * array to a priority queue ordered by a custom RankKey. The rank keys of the batch are computed
+   * at once, then each Application is offered with its key.
+   * 
+   * @param batch the array holding the Applications to add
+   * @param from  index of the first Application to add
+   * @param to    index after the last Application to add
+   * @return how many Applications of the batch were accepted and rejected, and how many
+   *         Applications were evicted from the priority queue
+   * @throws NullPointerException if any of the Applications to add is null
+   */
+  private IntakeResult addRanked(Application[] batch, int from, int to)
+      throws NullPointerException {
+    for (int i = from; i < to; i++) {
+      if (batch[i] == null) {
+        throw new NullPointerException("application is null");
+      }
+    }
+    ApplicationQueue queue = (ApplicationQueue) applications;
+    long[] keys = new long[to - from];
+    queue.getRankKey().keys(batch, from, to, queue.reserveArrivals(to - from), keys);
+    long accepted = 0;
+    long evicted = 0;
+    for (int i = from; i < to; i++) {
+      if (isDuplicate(batch[i])) {
+        continue;
+      }
+      boolean full = queue.size() == capacity;
+      Application lowest = full ? queue.peek() : null;
+      if (queue.offerKeyed(batch[i], keys[i - from])) {
+        accepted++;
+        if (full) {
+          evicted++;
+        }
+        replaced(lowest, batch[i]);
+      }
+    }
+    return new IntakeResult(accepted, (to - from) - accepted, evicted);
+  }
+
+  /**
+   * Fills the empty priority queue with the best Applications of the given batch. Applications
+   * scoring above the threshold are all kept, and the first ones scoring exactly the threshold
+   * fill the remaining vacancies. They are counting-sorted by score and added in increasing
+   * score order, so that each of them is already below every Application with a lower score;
+   * only Applications with the same score may move up, if the tie-break orders them.
+   * 
+   * @param batch     the array holding the Applications to add
+   * @param from      index of the first Application to add
+   * @param to        index after the last Application to add
+   * @param counts    number of Applications of the batch per score, used as scratch space
+   * @param threshold lowest score of an Application which can be kept
+   * @return the counts of accepted and rejected Applications
+   */
+  private IntakeResult load(Application[] batch, int from, int to, int[] counts, int threshold) {
+    int above = 0;
+    for (int score = threshold + 1; score < counts.length; score++) {
+      above += counts[score];
+    }
+    int ties = counts[threshold]; // Applications scoring exactly the threshold
+    int quota = Math.min(ties, capacity - above); // how many of them fit
+
+    // turn the counts into the position of each score in the sorted array
+    Application[] sorted = new Application[quota + above];
+    int position = quota;
+    for (int score = threshold + 1; score < counts.length; score++) {
+      int count = counts[score];
+      counts[score] = position;
+      position += count;
+    }
+    int taken = 0;
+    for (int i = from; i < to; i++) {
+      int score = batch[i].getScore();
+      if (score > threshold) {
+        sorted[counts[score]++] = batch[i];
+      } else if (score == threshold && taken < quota) {
+        sorted[taken++] = batch[i];
+      }
+    }
+
+    for (Application a : sorted) {
+      applications.enqueue(a);
+      record(a);
+    }
+    long accepted = sorted.length;
+
+    // the Applications tied with the threshold which did not fit are offered one by one
+    if (ties > quota) {
+      int skipped = 0;
+      for (int i = from; i < to; i++) {
+        if (batch[i].getScore() == threshold && skipped++ >= quota && offer(batch[i])) {
+          accepted++;
+        }
+      }
+    }
+    return new IntakeResult(accepted, (to - from) - accepted, accepted - sorted.length);
+  }
+
+  /**
+   * Checks whether the priority queue of this position is indexed and already holds an
+   * Application with the same email as the given one, which it would refuse
+   * 
+   * @param application the Application to check
+   * @return {@code true} if the Application must be rejected as a duplicate
+   */
+  private boolean isDuplicate(Application application) {
+    return applications instanceof IndexedApplicationQueue
+        && ((IndexedApplicationQueue) applications).contains(application.getEmail());
+  }
+
+  /**
+   * Adds the given Application to the statistics of this position, and notifies the listeners.
+   * 
+   * @param application Application which was just added to the queue
+   * @throws RuntimeException if a listener failed, once every listener was notified
+   */
+  private void record(Application application) {
+    replaced(null, application);
+  }
+
+  /**
+   * Removes the given Application from the statistics of this position, and notifies the
+   * listeners.
+   * 
+   * @param application Application which was just removed from the queue
+   * @throws RuntimeException if a listener failed, once every listener was notified
+   */
+  private void forget(Application application) {
+    replaced(application, null);
+  }
+
+  /**
+   * Updates the statistics of this position after an Application replaced another one in the
+   * queue, then notifies the listeners of the removal and of the addition. Both sides are counted
+   * before any listener is called, and a failing listener does not keep the others from being
+   * notified, so the statistics always match the queue, and a journal gets both records even if
+   * another listener fails.
+   * 
+   * @param removed Application which was just removed from the queue, or null
+   * @param added   Application which was just added to the queue, or null
+   * @throws RuntimeException the exception of the first failing listener, once every listener was
+   *                          notified
+   */
+  private void replaced(Application removed, Application added) {
+    if (removed != null) {
+      count(removed, -1);
+    }
+    if (added != null) {
+      count(added, 1);
+    }
+    RuntimeException failure = notifyListeners(removed, added, null);
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Adds the given Application to the statistics of this position the given number of times
+   * 
+   * @param application the Application to count
+   * @param delta       1 if it was added to the queue, -1 if it was removed
+   */
+  private void count(Application application, int delta) {
+    totalScore += delta * application.getScore();
+    scoreCounts[application.getScore()] += delta;
+  }
+
+  /**
+   * Notifies every listener of the given removal, then of the given addition, even if some of
+   * them fail
+   * 
+   * @param removed Application which was removed from the queue, or null
+   * @param added   Application which was added to the queue, or null
+   * @param failure exception of a listener which already failed, or null
+   * @return the first exception thrown by a listener, with the next ones suppressed, or null
+   */
+  private RuntimeException notifyListeners(Application removed, Application added,
+      RuntimeException failure) {
+    for (IntakeListener listener : listeners) {
+      try {
+        if (removed != null) {
+          listener.removed(this, removed);
+        }
+      } catch (RuntimeException e) {
+        failure = suppress(failure, e);
+      }
+      try {
+        if (added != null) {
+          listener.added(this, added);
+        }
+      } catch (RuntimeException e) {
+        failure = suppress(failure, e);
+      }
+    }
+    return failure;
+  }
+
+  /**
+   * Returns the first of the given exceptions, with the second one added to its suppressed ones
+   * 
+   * @param first  the first exception, or null
+   * @param second the next exception
+   * @return the exception to throw
+   */
+  private static RuntimeException suppress(RuntimeException first, RuntimeException second) {
+    if (first == null) {
+      return second;
+    }
+    first.addSuppressed(second);
+    return first;
+  }
+
+  /**
+   * Returns the priority queue of this position, so that other classes of this package can read
+   * it. The queue must not be modified through the returned reference, since the statistics of
+   * this position would not be updated.
+   * 
+   * @return the priority queue of this position
+   */
+  ShortlistQueue shortlist() {
+    return applications;
+  }
+
+  /**
+   * Checks whether every vacancy of this position is filled, so that adding an Application evicts
+   * another one. Unlike the cut-off score, this also works when the priority queue is ordered by
+   * another RankKey than a TieBreak.
+   *
+   * @return {@code true} if the priority queue is full
+   */
+  boolean isFull() {
+    return applications.size() == capacity;
+  }
+
+  /**
+   * Checks whether an Application with the given score could be added to this position, so that
+   * callers can reject an Application before building it.
+   *
+   * @param score the score of the Application
+   * @return {@code false} if add() would reject any Application with this score
+   */
+  boolean mayAccept(int score) {
+    int cutoff = getCutoffScore();
+    if (score != cutoff) {
+      return score > cutoff;
+    }
+    // a score equal to the cut-off only gets in if ties can favour the new Application
+    if (applications instanceof BucketApplicationQueue) {
+      return false;
+    }
+    if (applications instanceof ApplicationQueue) {
+      TieBreak tieBreak = ((ApplicationQueue) applications).getTieBreak();
+      return tieBreak == TieBreak.NAME || tieBreak == TieBreak.EMAIL;
+    }
+    return true;
   }
 
   /**
@@ -56,6 +818,9 @@ public class OpenPosition {
    * @return The list of Applications in the priority queue, in increasing order of the scores.
    */
   public String getApplications() {
+    if (metrics != null) {
+      metrics.recordIteration();
+    }
     return applications.toString();
   }
 
@@ -65,14 +830,95 @@ public class OpenPosition {
    * @return The total score of Applications in the priority queue.
    */
   public int getTotalScore() {
-    ApplicationIterator iterator = new ApplicationIterator(applications);
-    int score = 0;
-    Application curr;
-    while (iterator.hasNext()) {
-      curr = iterator.next();
-      score += curr.getScore();
+    return (int) totalScore;
+  }
+
+  /**
+   * Returns the number of Applications in the priority queue.
+   * 
+   * @return The number of Applications in the priority queue.
+   */
+  public int getApplicationCount() {
+    return applications.size();
+  }
+
+  /**
+   * Returns the mean score of Applications in the priority queue.
+   * 
+   * @return The mean score of Applications in the priority queue.
+   * @throws NoSuchElementException if the priority queue is empty
+   */
+  public double getMeanScore() throws NoSuchElementException {
+    if (applications.isEmpty()) {
+      throw new NoSuchElementException("no applications");
     }
+    return (double) totalScore / applications.size();
+  }
+
+  /**
+   * Returns the score a new Application must beat to be added to this position, i.e. the score of
+   * the lowest-scored Application once every vacancy is filled. A position whose priority queue
+   * is ordered by another RankKey than a TieBreak has no such score.
+   * 
+   * @return The score of the lowest-scored Application if the priority queue is full, or -1 if
+   *         there are still vacancies, or the queue is not ordered by score.
+   */
+  public int getCutoffScore() {
+    if (!rankedByScore || applications.size() < capacity) {
+      return -1;
+    }
+    return applications.peekScore();
+  }
 
-    return score;
+  /**
+   * Returns the lowest score of Applications in the priority queue.
+   * 
+   * @return The lowest score of Applications in the priority queue.
+   * @throws NoSuchElementException if the priority queue is empty
+   */
+  public int getMinScore() throws NoSuchElementException {
+    return getScorePercentile(0);
+  }
+
+  /**
+   * Returns the highest score of Applications in the priority queue.
+   * 
+   * @return The highest score of Applications in the priority queue.
+   * @throws NoSuchElementException if the priority queue is empty
+   */
+  public int getMaxScore() throws NoSuchElementException {
+    return getScorePercentile(100);
+  }
+
+  /**
+   * Returns the given percentile of the scores of Applications in the priority queue, using the
+   * nearest-rank method: the lowest score such that at least the given percentage of the
+   * Applications have a lower or equal score. The histogram of the scores is walked, so this
+   * method does not depend on the number of Applications.
+   * 
+   * @param percentile the percentile to compute, in the 0 .. 100 range
+   * @return The given percentile of the scores of Applications in the priority queue.
+   * @throws IllegalArgumentException with a descriptive error message if the percentile is not in
+   *                                  the 0 .. 100 range
+   * @throws NoSuchElementException   if the priority queue is empty
+   */
+  public int getScorePercentile(double percentile)
+      throws IllegalArgumentException, NoSuchElementException {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("invalid percentile");
+    }
+    int count = applications.size();
+    if (count == 0) {
+      throw new NoSuchElementException("no applications");
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int score = 0; score < scoreCounts.length; score++) {
+      seen += scoreCounts[score];
+      if (seen >= rank) {
+        return score;
+      }
+    }
+    return Application.MAX_SCORE; // unreachable since the histogram holds count applications
   }
 }
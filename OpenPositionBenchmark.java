@@ -0,0 +1,360 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * This class measures the performance of ApplicationQueue, ApplicationIterator and OpenPosition
+ * for capacities from 10 up to a given maximum (10^7 by default). The queues are measured as
+ * binary ("heap"), 4-ary ("heap4") and 8-ary ("heap8") heaps, and as buckets.
+ *
+ * Each benchmark prepares its data outside of the measurement, then runs a few warm-up
+ * iterations, so that the JIT compiler has optimized the measured code, and a few measured
+ * iterations. For each benchmark, the average time and the average number of bytes allocated by
+ * the measuring thread are reported per operation. Results are consumed by a sink, so that the
+ * measured code cannot be optimized away.
+ *
+ * This is a plain harness, not JMH, and its numbers are rougher than JMH results:
+ * <ul>
+ * <li>Warm-up is a fixed number of iterations, not a time, so a small capacity may be measured
+ * before the JIT compiler has finished, and nothing checks that the results are stable.</li>
+ * <li>Every benchmark runs in the same JVM, without forks. The profile of the benchmarks run
+ * earlier, e.g. the queue kinds seen at a call site, and the garbage they leave affect the later
+ * ones. To isolate a benchmark, run it alone in a fresh JVM with a name prefix.</li>
+ * <li>Allocation is read from com.sun.management.ThreadMXBean, so it covers the measuring thread
+ * only, and is reported as 0 on JVMs without it.</li>
+ * </ul>
+ *
+ * Usage: java -Xmx4g OpenPositionBenchmark [maxCapacity] [benchmark name prefix]. The capacity of
+ * 10^7 needs a few GB of heap; pass a smaller maximum, e.g. 1000000, for a quicker run.
+ */
+public class OpenPositionBenchmark {
+  private static final int DEFAULT_MAX_CAPACITY = 10000000; // largest capacity measured by default
+  private static final int WARMUP_ITERATIONS = 3; // iterations run before measuring
+  private static final int MEASURED_ITERATIONS = 5; // iterations measured
+  private static final int MIN_STREAM_LENGTH = 100000; // applications added to a full position
+  private static final int PEEKS = 1000000; // calls to peek() per iteration
+  private static final int MAX_TO_STRING_CAPACITY = 1000000; // larger Strings are not built
+  private static final String NAME = "applicant"; // name shared by all applications
+  private static final String EMAIL = "applicant@gmail.com"; // email shared by all applications
+
+  private static long sink; // consumes the results of the measured operations
+
+  /**
+   * The orders in which applications arrive at a full position
+   */
+  private enum ArrivalOrder {
+    ASCENDING, DESCENDING, RANDOM, EQUAL
+  }
+
+  /**
+   * Prepares an iteration of a benchmark, outside of the measurement
+   */
+  private interface Trial {
+    /**
+     * Prepares the data of an iteration
+     *
+     * @return the operation to measure
+     */
+    Operation prepare();
+  }
+
+  /**
+   * An operation measured by a benchmark
+   */
+  private interface Operation {
+    /**
+     * Runs the measured operation
+     *
+     * @return the number of elementary operations it performed
+     */
+    long run();
+  }
+
+  /**
+   * Returns the given number of applications, with scores in the given arrival order
+   *
+   * @param count  number of applications
+   * @param order  order of their scores
+   * @param random source of random scores
+   * @return the applications
+   */
+  private static Application[] applications(int count, ArrivalOrder order, Random random) {
+    // applications are shared between scores, so that large arrays fit in memory
+    Application[] byScore = new Application[Application.MAX_SCORE + 1];
+    for (int score = 0; score < byScore.length; score++) {
+      byScore[score] = new Application(NAME, EMAIL, score);
+    }
+    Application[] applications = new Application[count];
+    for (int i = 0; i < count; i++) {
+      int score;
+      switch (order) {
+        case ASCENDING:
+          score = (int) ((long) i * byScore.length / count);
+          break;
+        case DESCENDING:
+          score = Application.MAX_SCORE - (int) ((long) i * byScore.length / count);
+          break;
+        case EQUAL:
+          score = Application.MAX_SCORE / 2;
+          break;
+        default:
+          score = random.nextInt(byScore.length);
+      }
+      applications[i] = byScore[score];
+    }
+    return applications;
+  }
+
+  /**
+   * Returns the number of bytes allocated so far by the current thread
+   *
+   * @return the number of bytes allocated by the current thread, or 0 if unsupported
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  /**
+   * Runs a benchmark and prints its average time and allocation per operation
+   *
+   * @param name     name of the benchmark
+   * @param capacity capacity of the measured queue or position
+   * @param filter   prefix of the names of the benchmarks to run
+   * @param trial    prepares each iteration of the benchmark
+   */
+  private static void measure(String name, int capacity, String filter, Trial trial) {
+    if (!name.startsWith(filter)) {
+      return;
+    }
+    long nanos = 0;
+    long bytes = 0;
+    long operations = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+      Operation operation = trial.prepare();
+      long startBytes = allocatedBytes();
+      long start = System.nanoTime();
+      long count = operation.run();
+      long end = System.nanoTime();
+      long endBytes = allocatedBytes();
+      if (i >= WARMUP_ITERATIONS) {
+        nanos += end - start;
+        bytes += endBytes - startBytes;
+        operations += count;
+      }
+    }
+    System.out.printf("%-32s %10d %14.2f %12.2f%n", name, capacity, (double) nanos / operations,
+        (double) bytes / operations);
+  }
+
+  /**
+   * Runs the benchmarks of the queues for the given capacity
+   *
+   * @param capacity capacity of the measured queues
+   * @param filter   prefix of the names of the benchmarks to run
+   * @param random   source of random scores
+   */
+  private static void benchmarkQueues(int capacity, String filter, Random random) {
+    Application[] filling = applications(capacity, ArrivalOrder.RANDOM, random);
+    Application[] stream = applications(Math.max(capacity, MIN_STREAM_LENGTH),
+        ArrivalOrder.RANDOM, random);
+    String[] kinds = {"heap", "heap4", "heap8", "bucket"};
+    for (String kind : kinds) {
+      measure(kind + ".enqueue", capacity, filter, () -> {
+        ShortlistQueue queue = queue(kind, capacity);
+        return () -> {
+          for (Application a : filling) {
+            queue.enqueue(a);
+          }
+          return filling.length;
+        };
+      });
+      measure(kind + ".dequeue", capacity, filter, () -> {
+        ShortlistQueue queue = filled(kind, filling);
+        return () -> {
+          long sum = 0;
+          while (!queue.isEmpty()) {
+            sum += queue.dequeue().getScore();
+          }
+          sink += sum;
+          return filling.length;
+        };
+      });
+      measure(kind + ".offerIfBetter", capacity, filter, () -> {
+        ShortlistQueue queue = filled(kind, filling);
+        return () -> {
+          long accepted = 0;
+          for (Application a : stream) {
+            if (queue.offerIfBetter(a)) {
+              accepted++;
+            }
+          }
+          sink += accepted;
+          return stream.length;
+        };
+      });
+      measure(kind + ".replaceTop", capacity, filter, () -> {
+        ShortlistQueue queue = filled(kind, filling);
+        return () -> {
+          long sum = 0;
+          for (Application a : stream) {
+            sum += queue.replaceTop(a).getScore();
+          }
+          sink += sum;
+          return stream.length;
+        };
+      });
+      measure(kind + ".peek", capacity, filter, () -> {
+        ShortlistQueue queue = filled(kind, filling);
+        return () -> {
+          long sum = 0;
+          for (int i = 0; i < PEEKS; i++) {
+            sum += queue.peek().getScore();
+          }
+          sink += sum;
+          return PEEKS;
+        };
+      });
+    }
+  }
+
+  /**
+   * Runs the benchmarks of OpenPosition for the given capacity
+   *
+   * @param capacity capacity of the measured positions
+   * @param filter   prefix of the names of the benchmarks to run
+   * @param random   source of random scores
+   */
+  private static void benchmarkPosition(int capacity, String filter, Random random) {
+    Application[] filling = applications(capacity, ArrivalOrder.RANDOM, random);
+    int streamLength = Math.max(capacity, MIN_STREAM_LENGTH);
+    for (ArrivalOrder order : ArrivalOrder.values()) {
+      Application[] stream = applications(streamLength, order, random);
+      measure("position.add." + order.name().toLowerCase(), capacity, filter, () -> {
+        OpenPosition position = position(filling);
+        return () -> {
+          long accepted = 0;
+          for (Application a : stream) {
+            if (position.add(a)) {
+              accepted++;
+            }
+          }
+          sink += accepted;
+          return stream.length;
+        };
+      });
+    }
+
+    ApplicationQueue queue = (ApplicationQueue) filled("heap", filling);
+    measure("iterator.next", capacity, filter, () -> () -> {
+      long sum = 0;
+      ApplicationIterator iterator = new ApplicationIterator(queue);
+      while (iterator.hasNext()) {
+        sum += iterator.next().getScore();
+      }
+      sink += sum;
+      return capacity;
+    });
+    OpenPosition position = position(filling);
+    measure("position.getTotalScore", capacity, filter, () -> () -> {
+      long sum = 0;
+      for (int i = 0; i < PEEKS; i++) {
+        sum += position.getTotalScore();
+      }
+      sink += sum;
+      return PEEKS;
+    });
+    if (capacity <= MAX_TO_STRING_CAPACITY) {
+      measure("position.toString", capacity, filter, () -> () -> {
+        sink += position.getApplications().length();
+        return 1;
+      });
+    }
+  }
+
+  /**
+   * Returns a new empty queue of the given kind
+   *
+   * @param kind     kind of queue, "heap", "heap4", "heap8" or "bucket"
+   * @param capacity capacity of the queue
+   * @return the new queue
+   */
+  private static ShortlistQueue queue(String kind, int capacity) {
+    switch (kind) {
+      case "bucket":
+        return new BucketApplicationQueue(capacity);
+      case "heap4":
+        return new ApplicationQueue(capacity, TieBreak.NONE, 4);
+      case "heap8":
+        return new ApplicationQueue(capacity, TieBreak.NONE, 8);
+      default:
+        return new ApplicationQueue(capacity);
+    }
+  }
+
+  /**
+   * Returns a new queue of the given kind, holding the given applications
+   *
+   * @param kind         kind of queue, "heap", "heap4", "heap8" or "bucket"
+   * @param applications the applications to enqueue
+   * @return the new queue
+   */
+  private static ShortlistQueue filled(String kind, Application[] applications) {
+    ShortlistQueue queue = queue(kind, applications.length);
+    for (Application a : applications) {
+      queue.enqueue(a);
+    }
+    return queue;
+  }
+
+  /**
+   * Returns a new full position holding the given applications
+   *
+   * @param applications the applications to add
+   * @return the new position
+   */
+  private static OpenPosition position(Application[] applications) {
+    OpenPosition position = new OpenPosition("benchmark", applications.length);
+    for (Application a : applications) {
+      position.add(a);
+    }
+    return position;
+  }
+
+  /**
+   * Driver method of the benchmarks
+   *
+   * @param args the largest capacity to measure (10^7 by default), and the prefix of the names of
+   *             the benchmarks to run (all of them by default)
+   */
+  public static void main(String[] args) {
+    int maxCapacity;
+    try {
+      maxCapacity = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_CAPACITY;
+    } catch (NumberFormatException e) {
+      maxCapacity = 0;
+    }
+    if (maxCapacity < 10 || args.length > 2) {
+      System.out.println("usage: java -Xmx4g OpenPositionBenchmark [maxCapacity] [prefix]");
+      System.out.println("  maxCapacity  largest capacity measured, from 10 up to "
+          + DEFAULT_MAX_CAPACITY + " (the default) in powers of 10");
+      System.out.println("  prefix       runs only the benchmarks whose names start with it,"
+          + " e.g. heap4.offerIfBetter");
+      System.out.println("Each run is a single JVM without forks: run one prefix per JVM to"
+          + " isolate a benchmark.");
+      return;
+    }
+    String filter = args.length > 1 ? args[1] : "";
+    Random random = new Random(300);
+
+    System.out.printf("%-32s %10s %14s %12s%n", "benchmark", "capacity", "ns/op", "B/op");
+    for (int capacity = 10; capacity > 0 && capacity <= maxCapacity; capacity *= 10) {
+      benchmarkQueues(capacity, filter, random);
+      benchmarkPosition(capacity, filter, random);
+    }
+    System.out.println("sink: " + sink);
+  }
+}
@@ -0,0 +1,337 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Writes the state of an OpenPosition to a compact binary file, and restores it. The priority
+ * queue of a position backed by an ApplicationQueue is written in heap order, with the rank keys
+ * of its Applications, so that it is restored as is, without any percolation. Other queues are
+ * written in decreasing order and restored by enqueuing their Applications again.
+ *
+ * The file starts with a magic number and a format version. All numbers are big-endian, and all
+ * Strings are written as their length in bytes followed by their UTF-8 bytes. Optionally, every
+ * distinct String is written once in a table, and Applications refer to it by index:
+ *
+ * <pre>
+ * int    magic, version
+ * byte   flags (1: Strings are deduplicated), kind of queue (0: heap, 1: bucket, 2: packed,
+ *        3: indexed heap)
+ * long   offset in the IntakeJournal of the position up to which the snapshot is complete
+ * String position name
+ * int    capacity, number of Applications
+ * heap and indexed heap only: byte tie-break, long number of arrivals, byte arity
+ * deduplicated only: int number of Strings, then the Strings
+ * per Application: name, email (a String or an int index in the table), byte score,
+ *                  heap and indexed heap only: long rank key
+ * </pre>
+ *
+ * The number of Applications is checked against the length of the file before anything is
+ * allocated for them, and the arrays of the capacity of the queue are only allocated once the
+ * whole file was read, so a corrupt file is rejected without allocating its capacity.
+ */
+public class OpenPositionSnapshot {
+  private static final int MAGIC = 0x4F50534E; // "OPSN"
+  private static final int VERSION = 1; // version of the format written by this class
+  private static final int DEDUPLICATED = 1; // flag set when Strings are in a table
+  private static final byte HEAP = 0; // the queue is an ApplicationQueue
+  private static final byte BUCKET = 1; // the queue is a BucketApplicationQueue
+  private static final byte PACKED = 2; // the queue is a PackedApplicationQueue
+  private static final byte INDEXED = 3; // the queue is an IndexedApplicationQueue
+
+  /**
+   * Creates no instance: this class only has static methods
+   */
+  private OpenPositionSnapshot() {
+  }
+
+  /**
+   * Writes the state of the given position to the given file, replacing it if it exists
+   *
+   * @param position    the position to write
+   * @param file        the file to write
+   * @param deduplicate whether repeated Strings are written only once
+   * @throws IOException              if the file cannot be written
+   * @throws NullPointerException     if the position or the file is null
+   * @throws IllegalArgumentException with a descriptive error message if the position is ordered
+   *                                  by another RankKey than a TieBreak, which cannot be written
+   */
+  public static void write(OpenPosition position, Path file, boolean deduplicate)
+      throws IOException, NullPointerException, IllegalArgumentException {
+    write(position, file, deduplicate, 0);
+  }
+
+  /**
+   * Writes the state of the given position to the given file, replacing it if it exists, and
+   * records that every entry of the journal of the position before the given offset is already
+   * part of this state
+   *
+   * @param position      the position to write
+   * @param file          the file to write
+   * @param deduplicate   whether repeated Strings are written only once
+   * @param journalOffset offset in the journal up to which the snapshot is complete
+   * @throws IOException              if the file cannot be written
+   * @throws NullPointerException     if the position or the file is null
+   * @throws IllegalArgumentException with a descriptive error message if the position is ordered
+   *                                  by another RankKey than a TieBreak, which cannot be written
+   */
+  static void write(OpenPosition position, Path file, boolean deduplicate, long journalOffset)
+      throws IOException, NullPointerException, IllegalArgumentException {
+    if (position == null) {
+      throw new NullPointerException("position is null");
+    }
+    ShortlistQueue queue = position.shortlist();
+    Application[] applications;
+    ApplicationQueue heap = null;
+    byte kind;
+    if (queue instanceof ApplicationQueue) {
+      kind = queue instanceof IndexedApplicationQueue ? INDEXED : HEAP;
+      heap = (ApplicationQueue) queue;
+      if (heap.getTieBreak() == null) {
+        throw new IllegalArgumentException("unsupported rank key");
+      }
+      heap.compact();
+      applications = new Application[heap.size()];
+      for (int i = 0; i < applications.length; i++) {
+        applications[i] = heap.elementAt(i);
+      }
+    } else {
+      kind = queue instanceof BucketApplicationQueue ? BUCKET : PACKED;
+      applications = new Application[queue.size()];
+      // written from the last Application to leave the queue to the first one, so that
+      // enqueuing them again in this order gives Applications with the same score the same order
+      int i = applications.length;
+      for (Application a : queue) {
+        applications[--i] = a;
+      }
+    }
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeByte(deduplicate ? DEDUPLICATED : 0);
+      out.writeByte(kind);
+      out.writeLong(journalOffset);
+      writeString(out, position.getPositionName() == null ? "" : position.getPositionName());
+      out.writeInt(queue.capacity());
+      out.writeInt(applications.length);
+      if (heap != null) {
+        out.writeByte(heap.getTieBreak().ordinal());
+        out.writeLong(heap.arrivals());
+        out.writeByte(heap.getArity());
+      }
+
+      HashMap<String, Integer> table = null;
+      if (deduplicate) {
+        table = new HashMap<String, Integer>();
+        for (Application a : applications) {
+          table.putIfAbsent(a.getName(), table.size());
+          table.putIfAbsent(a.getEmail(), table.size());
+        }
+        String[] strings = new String[table.size()];
+        table.forEach((s, index) -> strings[index] = s);
+        out.writeInt(strings.length);
+        for (String s : strings) {
+          writeString(out, s);
+        }
+      }
+
+      for (int i = 0; i < applications.length; i++) {
+        Application a = applications[i];
+        if (table != null) {
+          out.writeInt(table.get(a.getName()));
+          out.writeInt(table.get(a.getEmail()));
+        } else {
+          writeString(out, a.getName());
+          writeString(out, a.getEmail());
+        }
+        out.writeByte(a.getScore());
+        if (heap != null) {
+          out.writeLong(heap.keyAt(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Restores a position from the given file, which is memory-mapped while it is read
+   *
+   * @param file the file written by write()
+   * @return a new position with the state of the written one
+   * @throws IOException          if the file cannot be read, or is not a valid snapshot
+   * @throws NullPointerException if the file is null
+   */
+  public static OpenPosition read(Path file) throws IOException, NullPointerException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("snapshot too large");
+      }
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return read(in);
+    } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new IOException("corrupt snapshot", e);
+    }
+  }
+
+  /**
+   * Returns the offset in the journal of the position up to which the given snapshot is complete
+   *
+   * @param file the file written by write()
+   * @return the journal offset of the snapshot, 0 if it was not written by an IntakeJournal
+   * @throws IOException          if the file cannot be read, or is not a valid snapshot
+   * @throws NullPointerException if the file is null
+   */
+  static long journalOffset(Path file) throws IOException, NullPointerException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer in = ByteBuffer.allocate(4 + 4 + 1 + 1 + 8);
+      while (in.hasRemaining() && channel.read(in) >= 0) {
+        // read the whole header
+      }
+      in.flip();
+      if (in.getInt() != MAGIC) {
+        throw new IOException("not a snapshot");
+      }
+      if (in.getInt() != VERSION) {
+        throw new IOException("unsupported snapshot version");
+      }
+      in.position(in.position() + 2); // flags and kind of queue
+      return in.getLong();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("corrupt snapshot", e);
+    }
+  }
+
+  /**
+   * Restores a position from the given buffer
+   *
+   * @param in the content of a file written by write()
+   * @return a new position with the state of the written one
+   * @throws IOException              if the buffer does not hold a snapshot of a supported
+   *                                  version
+   * @throws BufferUnderflowException if the buffer is truncated
+   * @throws IllegalArgumentException if the buffer holds invalid values
+   */
+  private static OpenPosition read(ByteBuffer in) throws IOException {
+    if (in.getInt() != MAGIC) {
+      throw new IOException("not a snapshot");
+    }
+    if (in.getInt() != VERSION) {
+      throw new IOException("unsupported snapshot version");
+    }
+    boolean deduplicated = (in.get() & DEDUPLICATED) != 0;
+    byte kind = in.get();
+    in.getLong(); // journal offset
+    byte[] scratch = new byte[256];
+    String positionName = readString(in, scratch);
+    int capacity = in.getInt();
+    int size = in.getInt();
+    if (capacity <= 0 || size < 0 || size > capacity) {
+      throw new IllegalArgumentException("invalid size");
+    }
+    TieBreak tieBreak = null;
+    long arrivals = 0;
+    int arity = 0;
+    if (kind == HEAP || kind == INDEXED) {
+      int ordinal = in.get();
+      if (ordinal < 0 || ordinal >= TieBreak.values().length) {
+        throw new IllegalArgumentException("invalid tie-break");
+      }
+      tieBreak = TieBreak.values()[ordinal];
+      arrivals = in.getLong();
+      arity = in.get();
+    } else if (kind != BUCKET && kind != PACKED) {
+      throw new IllegalArgumentException("invalid kind of queue");
+    }
+
+    String[] table = null;
+    if (deduplicated) {
+      int count = in.getInt();
+      if (count < 0 || count > in.remaining() / 4) {
+        throw new IllegalArgumentException("invalid table");
+      }
+      table = new String[count];
+      for (int i = 0; i < count; i++) {
+        table[i] = readString(in, scratch);
+      }
+    }
+
+    // each Application takes at least two lengths or indexes and a score, and a rank key in a heap
+    boolean heap = kind == HEAP || kind == INDEXED;
+    if (size > in.remaining() / (4 + 4 + 1 + (heap ? 8 : 0))) {
+      throw new IllegalArgumentException("invalid size");
+    }
+    Application[] applications = new Application[size];
+    long[] keys = heap ? new long[size] : null;
+    for (int i = 0; i < size; i++) {
+      String name = table != null ? table[in.getInt()] : readString(in, scratch);
+      String email = table != null ? table[in.getInt()] : readString(in, scratch);
+      applications[i] = new Application(name, email, in.get());
+      if (keys != null) {
+        keys[i] = in.getLong();
+      }
+    }
+
+    ShortlistQueue queue;
+    if (heap) {
+      // the heap was written in heap order, so it is used as is, in arrays of the capacity
+      applications = Arrays.copyOf(applications, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+    }
+    if (kind == HEAP) {
+      queue = ApplicationQueue.fromHeap(applications, keys, size, tieBreak, arrivals, arity);
+    } else if (kind == INDEXED) {
+      queue =
+          IndexedApplicationQueue.fromHeap(applications, keys, size, tieBreak, arrivals, arity);
+    } else {
+      queue = kind == BUCKET ? new BucketApplicationQueue(capacity)
+          : new PackedApplicationQueue(capacity);
+      for (int i = 0; i < size; i++) {
+        queue.enqueue(applications[i]);
+      }
+    }
+    return new OpenPosition(positionName, queue);
+  }
+
+  /**
+   * Writes the given String as its length in bytes followed by its UTF-8 bytes
+   *
+   * @param out the stream to write to
+   * @param s   the String to write
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a String written by writeString()
+   *
+   * @param in      the buffer to read from
+   * @param scratch a buffer for the bytes of the String, grown if needed
+   * @return the String
+   * @throws BufferUnderflowException if the buffer is truncated
+   * @throws IllegalArgumentException if the length of the String is invalid
+   */
+  private static String readString(ByteBuffer in, byte[] scratch) {
+    int length = in.getInt();
+    if (length < 0 || length > in.remaining()) {
+      throw new IllegalArgumentException("invalid string length");
+    }
+    if (length > scratch.length) {
+      scratch = new byte[length];
+    }
+    in.get(scratch, 0, length);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+}
@@ -1,4 +1,31 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * This class implements unit test methods to check the correctness of Application,
@@ -340,6 +367,1862 @@ public class OpenPositionTester {
     return true; // TODO change this
   }
 
+  /**
+   * This method tests and makes use of the BucketApplicationQueue class, and of an OpenPosition
+   * keeping its applications in it, and checks that a bucket shrinks as it empties.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testBucketApplicationQueue() {
+    BucketApplicationQueue test = new BucketApplicationQueue(3);
+    Application one = new Application("1", "1@gmail.com", 10);
+    Application two = new Application("2", "2@gmail.com", 20);
+    Application three = new Application("3", "3@gmail.com", 30);
+    Application four = new Application("4", "4@gmail.com", 100);
+    Application five = new Application("5", "5@gmail.com", 0);
+
+    // verify the behaviors on an empty queue
+    if (!test.isEmpty() || test.size() != 0 || test.capacity() != 3) {
+      return false;
+    }
+    try {
+      test.peek();
+      return false;
+    } catch (Exception e) {
+      if (!(e instanceof NoSuchElementException)) {
+        return false;
+      }
+    }
+
+    // scores on both words of the bitmap
+    test.enqueue(four);
+    test.enqueue(two);
+    if (test.peek() != two) {
+      return false;
+    }
+    test.enqueue(five);
+    if (test.size() != 3 || test.peek() != five) {
+      return false;
+    }
+    try {
+      test.enqueue(one);
+      return false;
+    } catch (Exception e) {
+      if (!(e instanceof IllegalStateException)) {
+        return false;
+      }
+    }
+    if (test.dequeue() != five || test.dequeue() != two || test.dequeue() != four) {
+      return false;
+    }
+    try {
+      test.dequeue();
+      return false;
+    } catch (Exception e) {
+      if (!(e instanceof NoSuchElementException)) {
+        return false;
+      }
+    }
+
+    // an OpenPosition behaves the same when using buckets instead of a heap
+    OpenPosition position = new OpenPosition("test", new BucketApplicationQueue(3));
+    position.add(three);
+    position.add(one);
+    position.add(two);
+    if (position.add(five) || !position.add(four)) {
+      return false;
+    }
+    String ans = "2:2@gmail.com:20\n3:3@gmail.com:30\n4:4@gmail.com:100\n";
+    if (!position.getApplications().equals(ans) || position.getTotalScore() != 150) {
+      return false;
+    }
+
+    // a bucket shrinks once it is a quarter full, without changing the order of its Applications
+    BucketApplicationQueue shrinking = new BucketApplicationQueue(1000);
+    for (int i = 0; i < 1000; i++) {
+      shrinking.enqueue(new Application("a" + i, "a" + i + "@gmail.com", 50));
+    }
+    if (shrinking.bucketLength(50) != 1000) {
+      return false;
+    }
+    for (int i = 999; i >= 10; i--) {
+      if (!shrinking.dequeue().getName().equals("a" + i)) {
+        return false;
+      }
+    }
+    if (shrinking.bucketLength(50) > 40 || shrinking.bucketLength(50) < 10) {
+      return false;
+    }
+    for (int i = 9; i >= 0; i--) {
+      if (!shrinking.dequeue().getName().equals("a" + i)) {
+        return false;
+      }
+    }
+    return shrinking.isEmpty() && shrinking.bucketLength(50) == 4;
+  }
+
+  /**
+   * This method tests that ApplicationIterator walks a larger ApplicationQueue in order without
+   * modifying it, that it fails fast, and that spliterator() visits every Application.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testApplicationIteratorInPlace() {
+    ApplicationQueue test = new ApplicationQueue(200);
+    Random random = new Random(300);
+    int total = 0;
+    for (int i = 0; i < 200; i++) {
+      Application a = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(101));
+      test.enqueue(a);
+      total += a.getScore();
+    }
+
+    // verify that the iteration is in INCREASING score order and leaves the queue untouched
+    Application root = test.peek();
+    int previous = -1;
+    int count = 0;
+    for (Application a : test) {
+      if (a.getScore() < previous) {
+        return false;
+      }
+      previous = a.getScore();
+      count++;
+    }
+    if (count != 200 || test.size() != 200 || test.peek() != root) {
+      return false;
+    }
+
+    // verify that dequeue() still returns the applications in order after iterating
+    previous = -1;
+    for (int i = 0; i < 100; i++) {
+      Application a = test.dequeue();
+      if (a.getScore() < previous) {
+        return false;
+      }
+      previous = a.getScore();
+      total -= a.getScore();
+    }
+
+    // verify that the spliterator visits every remaining application
+    int[] sum = new int[1];
+    test.spliterator().forEachRemaining(a -> sum[0] += a.getScore());
+    if (sum[0] != total) {
+      return false;
+    }
+
+    // verify that modifying the queue while iterating fails fast
+    Iterator<Application> iterator = test.iterator();
+    iterator.next();
+    test.dequeue();
+    try {
+      iterator.next();
+      return false;
+    } catch (Exception e) {
+      if (!(e instanceof ConcurrentModificationException)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This method tests the statistics (total, mean, cut-off, min, max and percentiles) maintained
+   * by OpenPosition while applications are added and replaced.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testOpenPositionStatistics() {
+    OpenPosition test = new OpenPosition("test", 4);
+
+    // verify the statistics of an empty position
+    if (test.getTotalScore() != 0 || test.getApplicationCount() != 0
+        || test.getCutoffScore() != -1) {
+      return false;
+    }
+    try {
+      test.getMeanScore();
+      return false;
+    } catch (Exception e) {
+      if (!(e instanceof NoSuchElementException)) {
+        return false;
+      }
+    }
+
+    test.add(new Application("1", "1@gmail.com", 40));
+    test.add(new Application("2", "2@gmail.com", 10));
+    test.add(new Application("3", "3@gmail.com", 30));
+    // still one vacancy
+    if (test.getCutoffScore() != -1 || test.getMinScore() != 10 || test.getMaxScore() != 40) {
+      return false;
+    }
+    test.add(new Application("4", "4@gmail.com", 20));
+    if (test.getCutoffScore() != 10 || test.getTotalScore() != 100 || test.getMeanScore() != 25) {
+      return false;
+    }
+
+    // replace the lowest-scored application, and reject one which does not beat the cut-off
+    test.add(new Application("5", "5@gmail.com", 90));
+    test.add(new Application("6", "6@gmail.com", 20));
+    if (test.getCutoffScore() != 20 || test.getTotalScore() != 180
+        || test.getApplicationCount() != 4 || test.getMaxScore() != 90) {
+      return false;
+    }
+
+    // scores are now 20, 30, 40, 90
+    if (test.getScorePercentile(25) != 20 || test.getScorePercentile(50) != 30
+        || test.getScorePercentile(75) != 40 || test.getScorePercentile(76) != 90) {
+      return false;
+    }
+    try {
+      test.getScorePercentile(101);
+      return false;
+    } catch (Exception e) {
+      if (!(e instanceof IllegalArgumentException)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that OpenPosition.addAll() keeps the same shortlist as adding each
+   * application one by one, on empty and non-empty positions, and reports the documented counts.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testAddAll() {
+    Random random = new Random(300);
+    for (int round = 0; round < 50; round++) {
+      int capacity = 1 + random.nextInt(20);
+      int bound = 1 + random.nextInt(101); // small bounds give many equal scores
+      Application[] batch = new Application[random.nextInt(60)];
+      for (int i = 0; i < batch.length; i++) {
+        batch[i] = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(bound));
+      }
+      // part of the batch is added beforehand, so that both paths of addAll() are used
+      int split = round % 2 == 0 ? 0 : random.nextInt(batch.length + 1);
+
+      OpenPosition expected = new OpenPosition("expected", capacity);
+      OpenPosition test = new OpenPosition("test", capacity);
+      for (int i = 0; i < split; i++) {
+        expected.add(batch[i]);
+        test.add(batch[i]);
+      }
+      int accepted = 0;
+      int evicted = 0;
+      for (int i = split; i < batch.length; i++) {
+        boolean full = expected.getCutoffScore() >= 0;
+        if (expected.add(batch[i])) {
+          accepted++;
+          if (full) {
+            evicted++;
+          }
+        }
+      }
+      IntakeResult result = test.addAll(batch, split, batch.length);
+
+      // filtered Applications which add() would have accepted then evicted count as rejected
+      if (result.getAccepted() + result.getRejected() != batch.length - split
+          || result.getAccepted() > accepted
+          || result.getAccepted() - result.getEvicted() != accepted - evicted) {
+        return false;
+      }
+      if (test.getApplicationCount() != expected.getApplicationCount()
+          || test.getTotalScore() != expected.getTotalScore()) {
+        return false;
+      }
+      // equal scores may be held by different applicants, so only the scores are compared
+      if (!scores(test.getApplications()).equals(scores(expected.getApplications()))) {
+        return false;
+      }
+
+      // a tie-break ordering every two applications keeps the same applicants
+      for (TieBreak tieBreak : new TieBreak[] {TieBreak.ARRIVAL, TieBreak.EMAIL}) {
+        OpenPosition ordered = new OpenPosition("ordered", capacity, tieBreak);
+        OpenPosition sequential = new OpenPosition("sequential", capacity, tieBreak);
+        for (int i = 0; i < batch.length; i++) {
+          sequential.add(batch[i]);
+          if (i < split) {
+            ordered.add(batch[i]);
+          }
+        }
+        ordered.addAll(batch, split, batch.length);
+        if (!ordered.getApplications().equals(sequential.getApplications())) {
+          return false;
+        }
+      }
+    }
+
+    // 20 would be added then evicted by 40, so it is counted as rejected
+    OpenPosition filtered = new OpenPosition("filtered", 2);
+    filtered.add(new Application("1", "1@gmail.com", 10));
+    IntakeResult result = filtered.addAll(Arrays.asList(new Application("2", "2@gmail.com", 20),
+        new Application("3", "3@gmail.com", 30), new Application("4", "4@gmail.com", 40)));
+    if (result.getAccepted() != 2 || result.getRejected() != 1 || result.getEvicted() != 1) {
+      return false;
+    }
+
+    // a null application is detected before anything is added
+    OpenPosition test = new OpenPosition("test", 3);
+    List<Application> batch = new ArrayList<Application>();
+    batch.add(new Application("1", "1@gmail.com", 10));
+    batch.add(null);
+    try {
+      test.addAll(batch);
+      return false;
+    } catch (Exception e) {
+      if (!(e instanceof NullPointerException) || test.getApplicationCount() != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This method tests the replaceTop() and offerIfBetter() methods of both ApplicationQueue and
+   * BucketApplicationQueue.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testReplaceTop() {
+    ShortlistQueue[] queues = {new ApplicationQueue(50), new BucketApplicationQueue(50)};
+    for (ShortlistQueue test : queues) {
+      // replacing the root of an empty queue fails
+      try {
+        test.replaceTop(new Application("1", "1@gmail.com", 10));
+        return false;
+      } catch (Exception e) {
+        if (!(e instanceof NoSuchElementException)) {
+          return false;
+        }
+      }
+
+      Random random = new Random(300);
+      for (int i = 0; i < 50; i++) {
+        if (!test.offerIfBetter(new Application("a" + i, "a" + i + "@gmail.com",
+            random.nextInt(101)))) {
+          return false;
+        }
+      }
+      // the queue is full: a score which does not beat the root is turned away
+      Application root = test.peek();
+      if (test.offerIfBetter(new Application("low", "low@gmail.com", root.getScore()))
+          || test.peek() != root) {
+        return false;
+      }
+      for (int i = 0; i < 200; i++) {
+        Application a = new Application("b" + i, "b" + i + "@gmail.com", random.nextInt(101));
+        Application lowest = test.peek();
+        boolean better = lowest.getScore() < a.getScore();
+        if (test.offerIfBetter(a) != better || test.size() != 50) {
+          return false;
+        }
+      }
+      Application replaced = test.replaceTop(new Application("top", "top@gmail.com", 100));
+      if (replaced.getScore() > test.peek().getScore()) {
+        return false;
+      }
+      // the queue is still ordered
+      int previous = -1;
+      while (!test.isEmpty()) {
+        Application a = test.dequeue();
+        if (a.getScore() < previous) {
+          return false;
+        }
+        previous = a.getScore();
+      }
+      if (previous != 100) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that ConcurrentOpenPosition keeps the same shortlist as OpenPosition when
+   * several threads add applications at the same time.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testConcurrentOpenPosition() {
+    int threads = 8;
+    Application[][] batches = new Application[threads][2000];
+    Random random = new Random(300);
+    OpenPosition expected = new OpenPosition("expected", 25);
+    for (int t = 0; t < threads; t++) {
+      for (int i = 0; i < batches[t].length; i++) {
+        batches[t][i] =
+            new Application("a" + i, "t" + t + "a" + i + "@gmail.com", random.nextInt(101));
+        expected.add(batches[t][i]);
+      }
+    }
+
+    ConcurrentOpenPosition test = new ConcurrentOpenPosition("test", 25, 4);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      Application[] batch = batches[t];
+      workers[t] = new Thread(() -> {
+        for (Application a : batch) {
+          test.add(a);
+        }
+      });
+      workers[t].start();
+    }
+    try {
+      for (Thread worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    OpenPosition snapshot = test.snapshot();
+    if (!scores(snapshot.getApplications()).equals(scores(expected.getApplications()))) {
+      return false;
+    }
+    // the cut-off score is now the one of the whole shortlist
+    if (test.getCutoffScore() != expected.getCutoffScore()) {
+      return false;
+    }
+    return !test.add(new Application("low", "low@gmail.com", expected.getCutoffScore()));
+  }
+
+  /**
+   * This method tests the PackedApplicationQueue class and its ApplicantDictionary.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testPackedApplicationQueue() {
+    ApplicantDictionary dictionary = new ApplicantDictionary();
+    PackedApplicationQueue test = new PackedApplicationQueue(3, dictionary);
+    Application one = new Application("1", "1@gmail.com", 10);
+    Application two = new Application("2", "2@gmail.com", 20);
+    Application three = new Application("3", "3@gmail.com", 30);
+    Application four = new Application("4", "4@gmail.com", 40);
+
+    long packed = PackedApplicationQueue.pack(100, 12345);
+    if (PackedApplicationQueue.scoreOf(packed) != 100
+        || PackedApplicationQueue.applicantOf(packed) != 12345) {
+      return false;
+    }
+
+    test.enqueue(three);
+    test.enqueue(one);
+    test.enqueue(two);
+    if (test.size() != 3 || !test.peek().toString().equals(one.toString())
+        || dictionary.size() != 3) {
+      return false;
+    }
+    // a rejected applicant is not added to the dictionary
+    if (test.offerIfBetter(new Application("0", "0@gmail.com", 10)) || dictionary.size() != 3) {
+      return false;
+    }
+    if (!test.offerIfBetter(four) || !test.toString()
+        .equals("2:2@gmail.com:20\n3:3@gmail.com:30\n4:4@gmail.com:40\n")) {
+      return false;
+    }
+
+    // an OpenPosition can keep its applications in a PackedApplicationQueue
+    OpenPosition position = new OpenPosition("test", new PackedApplicationQueue(2, dictionary));
+    position.add(one);
+    position.add(three);
+    position.add(two);
+    if (position.getTotalScore() != 50 || !position.getApplications()
+        .equals("2:2@gmail.com:20\n3:3@gmail.com:30\n")) {
+      return false;
+    }
+    if (!dictionary.getEmail(dictionary.find("2@gmail.com")).equals("2@gmail.com")) {
+      return false;
+    }
+
+    // a full position reads the lowest score without building the Application at the root
+    int[] peeks = new int[1];
+    PackedApplicationQueue counted = new PackedApplicationQueue(2, dictionary) {
+      @Override
+      public Application peek() {
+        peeks[0]++;
+        return super.peek();
+      }
+    };
+    OpenPosition full = new OpenPosition("full", counted);
+    full.add(three);
+    full.add(four);
+    for (int i = 0; i < 100; i++) {
+      full.add(new Application("low" + i, "low" + i + "@gmail.com", 20));
+    }
+    if (peeks[0] != 0 || counted.peekScore() != 30 || full.getCutoffScore() != 30) {
+      return false;
+    }
+
+    // a queue owning its dictionary compacts it, and keeps the same applications as a queue
+    // sharing a dictionary which remembers every applicant
+    Random random = new Random(300);
+    PackedApplicationQueue owning = new PackedApplicationQueue(600);
+    PackedApplicationQueue sharing = new PackedApplicationQueue(600, new ApplicantDictionary());
+    int largest = 0;
+    for (int i = 0; i < 20000; i++) {
+      String name = i % 7 == 0 ? "\u4e2d" + i : "a" + i; // some applicants are not Latin-1
+      Application a = new Application(name, "a" + i + "@gmail.com", random.nextInt(101));
+      if (owning.offerIfBetter(a) != sharing.offerIfBetter(a)) {
+        return false;
+      }
+      largest = Math.max(largest, owning.getDictionary().size());
+    }
+    return owning.toString().equals(sharing.toString()) && largest <= 1200
+        && sharing.getDictionary().size() > 1200;
+  }
+
+  /**
+   * This method tests that applications with the same score are kept according to the TieBreak
+   * of an OpenPosition, whatever the layout of its heap.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testTieBreak() {
+    Application a = new Application("a", "applicant.a@gmail.com", 50);
+    Application b = new Application("b", "applicant.b@gmail.com", 50);
+    Application c = new Application("c", "applicant.c@gmail.com", 50);
+    Application d = new Application("d", "applicant.d@gmail.com", 60);
+
+    // first come, first kept: c is turned away and d replaces b, the latest of the ties
+    OpenPosition arrival = new OpenPosition("arrival", 2, TieBreak.ARRIVAL);
+    if (!arrival.add(a) || !arrival.add(b) || arrival.add(c) || !arrival.add(d)) {
+      return false;
+    }
+    if (!arrival.getApplications().equals(a + "\n" + d + "\n")) {
+      return false;
+    }
+
+    // the names come first in alphabetical order
+    OpenPosition name = new OpenPosition("name", 2, TieBreak.NAME);
+    if (!name.add(c) || !name.add(a) || !name.add(b)) {
+      return false;
+    }
+    if (!name.getApplications().equals(b + "\n" + a + "\n")) {
+      return false;
+    }
+
+    // the emails only differ after the characters held by the rank key
+    OpenPosition email = new OpenPosition("email", 2, TieBreak.EMAIL);
+    email.add(b);
+    email.add(c);
+    if (!email.add(a) || !email.getApplications().equals(b + "\n" + a + "\n")) {
+      return false;
+    }
+
+    // with a tie-break, addAll() keeps exactly the same applications as add()
+    Random random = new Random(300);
+    Application[] batch = new Application[500];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = new Application("a" + i, "a" + i + "@gmail.com", 90 + random.nextInt(11));
+    }
+    for (TieBreak tieBreak : new TieBreak[] {TieBreak.ARRIVAL, TieBreak.NAME}) {
+      OpenPosition expected = new OpenPosition("expected", 40, tieBreak);
+      for (Application application : batch) {
+        expected.add(application);
+      }
+      OpenPosition test = new OpenPosition("test", 40, tieBreak);
+      test.addAll(Arrays.asList(batch));
+      if (!test.getApplications().equals(expected.getApplications())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that MatchingEngine keeps the same shortlists as offering every
+   * application to every position, and that it can limit the placements of each applicant.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testMatchingEngine() {
+    Random random = new Random(300);
+    MatchingEngine engine = new MatchingEngine();
+    OpenPosition[] expected = new OpenPosition[30];
+    for (int i = 0; i < expected.length; i++) {
+      int capacity = 1 + random.nextInt(10);
+      expected[i] = new OpenPosition("p" + i, capacity);
+      engine.addPosition(new OpenPosition("p" + i, capacity));
+    }
+    for (int i = 0; i < 2000; i++) {
+      Application a = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(101));
+      int added = 0;
+      for (OpenPosition position : expected) {
+        if (position.add(a)) {
+          added++;
+        }
+      }
+      if (engine.route(a) != added) {
+        return false;
+      }
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (!scores(engine.getPosition(i).getApplications())
+          .equals(scores(expected[i].getApplications()))) {
+        return false;
+      }
+    }
+
+    // each applicant is kept in at most one position, the most selective one it can get into
+    MatchingEngine single = new MatchingEngine(1);
+    OpenPosition low = new OpenPosition("low", 1);
+    OpenPosition high = new OpenPosition("high", 1);
+    single.addPosition(low);
+    single.addPosition(high);
+    high.add(new Application("h", "h@gmail.com", 50));
+    single.refresh(1);
+    if (single.route(new Application("x", "x@gmail.com", 60)) != 1
+        || high.getCutoffScore() != 60 || low.getApplicationCount() != 0) {
+      return false;
+    }
+    // the same applicant cannot be placed again, but the evicted one can
+    if (single.route(new Application("x", "x@gmail.com", 70)) != 0
+        || single.route(new Application("h", "h@gmail.com", 50)) != 1
+        || low.getCutoffScore() != 50) {
+      return false;
+    }
+
+    // an applicant evicted from a position without a cut-off score can be placed again too
+    MatchingEngine ranked = new MatchingEngine(1);
+    ranked.addPosition(new OpenPosition("weighted", new ApplicationQueue(1,
+        new WeightedRankKey(new WeightedRankKey.Feature[] {WeightedRankKey.SCORE},
+            new double[] {1}), 2)));
+    return ranked.route(new Application("h", "h@gmail.com", 50)) == 1
+        && ranked.route(new Application("x", "x@gmail.com", 60)) == 1
+        && ranked.route(new Application("h", "h@gmail.com", 70)) == 1;
+  }
+
+  /**
+   * This method tests that OpenPosition.addAllParallel() keeps the same applications as adding
+   * them one by one when the tie-break orders them completely, and the same scores otherwise.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testAddAllParallel() {
+    Random random = new Random(300);
+    Application[] batch = new Application[100000];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(101));
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (TieBreak tieBreak : TieBreak.values()) {
+        OpenPosition expected = new OpenPosition("expected", 500, tieBreak);
+        OpenPosition test = new OpenPosition("test", 500, tieBreak);
+        // part of the batch is added beforehand
+        for (int i = 0; i < 1000; i++) {
+          expected.add(batch[i]);
+          test.add(batch[i]);
+        }
+        for (int i = 1000; i < batch.length; i++) {
+          expected.add(batch[i]);
+        }
+        IntakeResult result = test.addAllParallel(batch, 1000, batch.length, pool);
+        if (result.getAccepted() + result.getRejected() != batch.length - 1000) {
+          return false;
+        }
+        if (tieBreak == TieBreak.NONE) {
+          if (!scores(test.getApplications()).equals(scores(expected.getApplications()))) {
+            return false;
+          }
+        } else if (!test.getApplications().equals(expected.getApplications())) {
+          return false;
+        }
+      }
+
+      // repeated names leave ties which TieBreak.NAME cannot order, so only the scores match
+      Application[] named = new Application[batch.length];
+      for (int i = 0; i < named.length; i++) {
+        named[i] = new Application("n" + i % 50, batch[i].getEmail(), batch[i].getScore());
+      }
+      OpenPosition expected = new OpenPosition("expected", 500, TieBreak.NAME);
+      OpenPosition test = new OpenPosition("test", 500, TieBreak.NAME);
+      for (Application a : named) {
+        expected.add(a);
+      }
+      test.addAllParallel(named, 0, named.length, pool);
+      if (!scores(test.getApplications()).equals(scores(expected.getApplications()))) {
+        return false;
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that ApplicationLoader adds the valid rows of CSV and NDJSON files as if
+   * they were added one by one, and rejects the invalid ones.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testApplicationLoader() {
+    Random random = new Random(300);
+    List<Application> valid = new ArrayList<Application>();
+    StringBuilder csv = new StringBuilder("name,email,score\n");
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      Application a = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(101));
+      valid.add(a);
+      csv.append(a.getName()).append(',').append(a.getEmail()).append(',')
+          .append(a.getScore()).append(i % 2 == 0 ? "\n" : "\r\n");
+      json.append("{\"score\": ").append(a.getScore()).append(", \"id\": ").append(i)
+          .append(", \"name\": \"").append(a.getName()).append("\", \"email\": \"")
+          .append(a.getEmail()).append("\"}\n");
+    }
+    // invalid rows
+    csv.append("b,b@gmail.com,101\nb,b@@gmail.com,90\nb,b@gmail.com\n,b@gmail.com,90\n");
+    json.append("{\"name\": \"b\", \"email\": \"bgmail.com\", \"score\": 90}\n")
+        .append("{\"name\": \"b\", \"score\": 90}\nnot json\n")
+        .append("{\"name\": \"b\", \"email\": \"b\\uZZZZ@gmail.com\", \"score\": 90}\n")
+        .append("{\"name\": \"b\", \"email\": \"b\\u0040@gmail.com\", \"score\": 90}\n");
+    // escape sequences and a last line without a line feed
+    Application escaped = new Application("C \"Q\" \u00e9", "c@gmail.com", 100);
+    valid.add(escaped);
+    csv.append(escaped.getName()).append(",c@gmail.com,100");
+    json.append("{\"name\": \"C \\\"Q\\\" \\u00e9\", \"email\": \"c@gmail.com\", ")
+        .append("\"score\": 100}");
+
+    OpenPosition expected = new OpenPosition("expected", 300, TieBreak.NAME);
+    for (Application a : valid) {
+      expected.add(a);
+    }
+    try {
+      Path dir = Files.createTempDirectory("applications");
+      Path csvFile = dir.resolve("applications.csv");
+      Path jsonFile = dir.resolve("applications.ndjson");
+      Files.write(csvFile, csv.toString().getBytes(StandardCharsets.UTF_8));
+      Files.write(jsonFile, json.toString().getBytes(StandardCharsets.UTF_8));
+      try {
+        for (Path file : new Path[] {csvFile, jsonFile}) {
+          OpenPosition test = new OpenPosition("test", 300, TieBreak.NAME);
+          IntakeResult result = ApplicationLoader.load(file, test);
+          int invalid = file == csvFile ? 4 : 5;
+          if (result.getAccepted() + result.getRejected() != valid.size() + invalid) {
+            return false;
+          }
+          if (result.getAccepted() - result.getEvicted() != 300) {
+            return false;
+          }
+          if (!test.getApplications().equals(expected.getApplications())) {
+            return false;
+          }
+        }
+
+        // a position ranked by a WeightedRankKey has no cut-off score, but still evicts
+        OpenPosition weighted = new OpenPosition("weighted", new ApplicationQueue(300,
+            new WeightedRankKey(new WeightedRankKey.Feature[] {WeightedRankKey.SCORE},
+                new double[] {1}), 2));
+        IntakeResult result = ApplicationLoader.load(csvFile, weighted);
+        if (result.getEvicted() == 0 || result.getAccepted() - result.getEvicted() != 300) {
+          return false;
+        }
+      } finally {
+        Files.delete(csvFile);
+        Files.delete(jsonFile);
+        Files.delete(dir);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that OpenPositionSnapshot restores positions with the same applications,
+   * statistics and heap layout, and rejects corrupt files.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testOpenPositionSnapshot() {
+    Random random = new Random(300);
+    Application[] batch = new Application[3000];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = new Application("a" + (i % 50), "a" + i + "@gmail.com", random.nextInt(101));
+    }
+    ShortlistQueue[] queues = {new ApplicationQueue(200, TieBreak.ARRIVAL),
+        new ApplicationQueue(200), new BucketApplicationQueue(200),
+        new PackedApplicationQueue(200, new ApplicantDictionary())};
+    try {
+      Path file = Files.createTempFile("position", ".snapshot");
+      try {
+        for (ShortlistQueue queue : queues) {
+          OpenPosition position = new OpenPosition("position", queue);
+          for (int i = 0; i < 2000; i++) {
+            position.add(batch[i]);
+          }
+          for (boolean deduplicate : new boolean[] {false, true}) {
+            OpenPositionSnapshot.write(position, file, deduplicate);
+            OpenPosition restored = OpenPositionSnapshot.read(file);
+            if (!restored.getPositionName().equals("position")
+                || !restored.getApplications().equals(position.getApplications())
+                || restored.getTotalScore() != position.getTotalScore()
+                || restored.getCutoffScore() != position.getCutoffScore()) {
+              return false;
+            }
+            if (queue instanceof ApplicationQueue) {
+              // the heap is restored as is, so both positions keep evolving the same way
+              ApplicationQueue heap = (ApplicationQueue) restored.shortlist();
+              for (int i = 0; i < heap.size(); i++) {
+                if (!heap.elementAt(i).toString()
+                    .equals(((ApplicationQueue) queue).elementAt(i).toString())) {
+                  return false;
+                }
+              }
+              OpenPosition copy = OpenPositionSnapshot.read(file);
+              for (int i = 2000; i < batch.length; i++) {
+                if (copy.add(batch[i]) != restored.add(batch[i])) {
+                  return false;
+                }
+              }
+            }
+          }
+        }
+
+        // a corrupt file is rejected
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        try {
+          OpenPositionSnapshot.read(file);
+          return false;
+        } catch (IOException e) {
+          // expected
+        }
+        bytes[0] = 0;
+        Files.write(file, bytes);
+        try {
+          OpenPositionSnapshot.read(file);
+          return false;
+        } catch (IOException e) {
+          // expected
+        }
+        // a huge capacity and size are rejected before anything is allocated for them
+        Files.write(file, ByteBuffer.allocate(34).putInt(0x4F50534E).putInt(1).put((byte) 0)
+            .put((byte) 1).putLong(0).putInt(0).putInt(Integer.MAX_VALUE)
+            .putInt(Integer.MAX_VALUE - 8).array());
+        try {
+          OpenPositionSnapshot.read(file);
+          return false;
+        } catch (IOException e) {
+          // expected
+        }
+      } finally {
+        Files.delete(file);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that IntakeJournal recovers a position from its journal alone, from a
+   * snapshot and the journal tail, and after a torn record, with every fsync policy, including
+   * applications purged by removeIf().
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testIntakeJournal() {
+    Random random = new Random(300);
+    Application[] batch = new Application[4000];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(101));
+    }
+    try {
+      Path dir = Files.createTempDirectory("journal");
+      Path journalFile = dir.resolve("intake.journal");
+      Path snapshotFile = dir.resolve("position.snapshot");
+      try {
+        for (IntakeJournal.FsyncPolicy policy : IntakeJournal.FsyncPolicy.values()) {
+          Files.deleteIfExists(journalFile);
+          Files.deleteIfExists(snapshotFile);
+          OpenPosition position = new OpenPosition("position", 300, TieBreak.ARRIVAL);
+          OpenPosition other = new OpenPosition("other", 10, TieBreak.ARRIVAL);
+          try (IntakeJournal journal = new IntakeJournal(journalFile, policy, 5)) {
+            position.addIntakeListener(journal);
+            other.addIntakeListener(journal);
+            for (int i = 0; i < 2000; i++) {
+              position.add(batch[i]);
+              other.add(batch[batch.length - 1 - i]);
+            }
+            journal.checkpoint(position, snapshotFile, true);
+            for (int i = 2000; i < 3000; i++) {
+              position.add(batch[i]);
+            }
+            position.removeIntakeListener(journal);
+            other.removeIntakeListener(journal);
+          }
+
+          // a torn record is dropped when the journal is opened again
+          byte[] torn = {0, 0, 0, 40, 1, 2, 3};
+          Files.write(journalFile, torn, StandardOpenOption.APPEND);
+          try (IntakeJournal journal = new IntakeJournal(journalFile, policy, 5)) {
+            position.addIntakeListener(journal);
+            other.addIntakeListener(journal);
+            for (int i = 3000; i < batch.length; i++) {
+              position.add(batch[i]);
+              other.add(batch[batch.length - 1 - i]);
+              if (i == 3500) {
+                // purged applications must not come back on recovery
+                position.removeIf(a -> a.getScore() % 10 == 0);
+                other.removeIf(a -> a.getScore() % 10 == 0);
+              }
+            }
+            position.removeIntakeListener(journal);
+            other.removeIntakeListener(journal);
+          }
+
+          OpenPosition recovered = IntakeJournal.recover(snapshotFile, journalFile);
+          if (!recovered.getApplications().equals(position.getApplications())) {
+            return false;
+          }
+          // other was never checkpointed, so none of its records were discarded
+          OpenPosition otherReplayed = new OpenPosition("other", 10, TieBreak.ARRIVAL);
+          IntakeResult result = IntakeJournal.replay(journalFile, 0, otherReplayed);
+          if (!otherReplayed.getApplications().equals(other.getApplications())
+              || result.getAccepted() - result.getEvicted() != other.getApplicationCount()) {
+            return false;
+          }
+        }
+
+        // once its only position is checkpointed, the journal drops the records before the
+        // snapshot, and keeps working from there
+        Files.deleteIfExists(journalFile);
+        OpenPosition position = new OpenPosition("position", 300, TieBreak.ARRIVAL);
+        try (IntakeJournal journal =
+            new IntakeJournal(journalFile, IntakeJournal.FsyncPolicy.EVERY_WRITE)) {
+          position.addIntakeListener(journal);
+          for (int i = 0; i < 3000; i++) {
+            position.add(batch[i]);
+          }
+          long before = Files.size(journalFile);
+          journal.checkpoint(position, snapshotFile, false);
+          if (Files.size(journalFile) >= before / 100) {
+            return false;
+          }
+          for (int i = 3000; i < batch.length; i++) {
+            position.add(batch[i]);
+          }
+          journal.checkpoint(position, snapshotFile, false);
+          position.add(new Application("last", "last@gmail.com", 100));
+          position.removeIntakeListener(journal);
+        }
+        if (!IntakeJournal.recover(snapshotFile, journalFile).getApplications()
+            .equals(position.getApplications())) {
+          return false;
+        }
+
+        // a failing listener neither leaves the statistics behind the queue nor keeps the other
+        // listeners from being notified of both sides of an eviction
+        IntakeJournal closed = new IntakeJournal(journalFile, IntakeJournal.FsyncPolicy.NEVER);
+        closed.close();
+        OpenPosition failing = new OpenPosition("failing", 2, TieBreak.ARRIVAL);
+        List<String> events = new ArrayList<String>();
+        failing.addIntakeListener(closed);
+        failing.addIntakeListener(new IntakeListener() {
+          @Override
+          public void added(OpenPosition position, Application application) {
+            events.add("added " + application.getName());
+          }
+
+          @Override
+          public void removed(OpenPosition position, Application application) {
+            events.add("removed " + application.getName());
+          }
+        });
+        for (int i = 0; i < 3; i++) {
+          try {
+            failing.add(new Application("f" + i, "f" + i + "@gmail.com", 10 * (i + 1)));
+            return false;
+          } catch (UncheckedIOException e) {
+            // the journal is closed, but the application was added anyway
+          }
+        }
+        if (failing.getTotalScore() != 50 || failing.getApplicationCount() != 2
+            || failing.getMinScore() != 20 || !events.equals(
+                Arrays.asList("added f0", "added f1", "removed f0", "added f2"))) {
+          return false;
+        }
+
+        // evictions are replayed by dequeuing the root, without draining the whole queue
+        Files.deleteIfExists(journalFile);
+        OpenPosition bucketed = new OpenPosition("bucketed", new BucketApplicationQueue(100));
+        try (IntakeJournal journal =
+            new IntakeJournal(journalFile, IntakeJournal.FsyncPolicy.NEVER)) {
+          bucketed.addIntakeListener(journal);
+          for (Application a : batch) {
+            bucketed.add(a);
+          }
+        }
+        int[] dequeues = new int[1];
+        OpenPosition counted = new OpenPosition("bucketed", new BucketApplicationQueue(100) {
+          @Override
+          public Application dequeue() {
+            dequeues[0]++;
+            return super.dequeue();
+          }
+        });
+        IntakeResult result = IntakeJournal.replay(journalFile, 0, counted);
+        if (!counted.getApplications().equals(bucketed.getApplications())
+            || result.getEvicted() == 0 || dequeues[0] != result.getEvicted()) {
+          return false;
+        }
+      } finally {
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(snapshotFile);
+        Files.delete(dir);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that WindowedOpenPosition keeps the same applications as selecting the best
+   * unexpired ones among all the applications added so far.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testWindowedOpenPosition() {
+    Random random = new Random(300);
+    WindowedOpenPosition position = new WindowedOpenPosition("position", 20, 100);
+    List<Application> added = new ArrayList<Application>();
+    List<Long> times = new ArrayList<Long>();
+    long time = 0;
+    for (int i = 0; i < 3000; i++) {
+      time += random.nextInt(3);
+      Application a = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(101));
+      position.add(a, time);
+      added.add(a);
+      times.add(time);
+
+      // expected: the best unexpired applications, the most recent first among equal scores
+      List<Integer> best = new ArrayList<Integer>();
+      for (int j = added.size() - 1; j >= 0 && times.get(j) > time - 100; j--) {
+        best.add(j);
+      }
+      best.sort((x, y) -> added.get(y).getScore() - added.get(x).getScore());
+      best = best.subList(0, Math.min(20, best.size()));
+      StringBuilder expected = new StringBuilder();
+      int total = 0;
+      for (int j = best.size() - 1; j >= 0; j--) {
+        expected.append(added.get(best.get(j))).append("\n");
+        total += added.get(best.get(j)).getScore();
+      }
+      if (!position.getApplications().equals(expected.toString())
+          || position.getApplicationCount() != best.size() || position.getTotalScore() != total) {
+        return false;
+      }
+      int cutoff = best.size() < 20 ? -1 : added.get(best.get(19)).getScore();
+      if (position.getCutoffScore() != cutoff
+          || position.getMinScore() != added.get(best.get(best.size() - 1)).getScore()
+          || position.getMaxScore() != added.get(best.get(0)).getScore()) {
+        return false;
+      }
+    }
+
+    // every application expires after the window
+    position.advance(time + 100);
+    try {
+      position.getMaxScore();
+      return false;
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+    try {
+      position.add(added.get(0), time);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    return position.getApplicationCount() == 0 && position.getCutoffScore() == -1;
+  }
+
+  /**
+   * This method tests that IndexedApplicationQueue and OpenPosition withdraw and rescore
+   * applications by email while keeping the heap, its index and the statistics consistent.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testIndexedApplicationQueue() {
+    Random random = new Random(300);
+    OpenPosition position = new OpenPosition("position", new IndexedApplicationQueue(100));
+    List<Application> kept = new ArrayList<Application>();
+    for (int i = 0; i < 5000; i++) {
+      String email = "a" + random.nextInt(300) + "@gmail.com";
+      IndexedApplicationQueue queue = (IndexedApplicationQueue) position.shortlist();
+      int operation = random.nextInt(4);
+      if (operation == 0) {
+        boolean present = queue.contains(email);
+        if (position.withdraw(email) != present) {
+          return false;
+        }
+        kept.removeIf(a -> a.getEmail().equals(email));
+      } else if (operation == 1) {
+        int score = random.nextInt(101);
+        boolean present = queue.contains(email);
+        if (position.updateScore(email, score) != present) {
+          return false;
+        }
+        for (int j = 0; j < kept.size(); j++) {
+          if (kept.get(j).getEmail().equals(email)) {
+            kept.set(j, new Application("a", email, score));
+          }
+        }
+      } else if (!queue.contains(email)) {
+        Application a = new Application("a", email, random.nextInt(101));
+        if (position.add(a)) {
+          if (kept.size() == 100) {
+            // the evicted application is the lowest one, which the queue no longer holds
+            kept.removeIf(k -> !queue.contains(k.getEmail()));
+          }
+          kept.add(a);
+        }
+      }
+
+      // the statistics, the index and the heap order match the expected applications
+      int total = 0;
+      for (Application a : kept) {
+        total += a.getScore();
+        if (queue.get(a.getEmail()) == null
+            || queue.get(a.getEmail()).getScore() != a.getScore()) {
+          return false;
+        }
+      }
+      if (position.getApplicationCount() != kept.size() || position.getTotalScore() != total) {
+        return false;
+      }
+      int previous = -1;
+      for (Application a : queue) {
+        if (a.getScore() < previous) {
+          return false;
+        }
+        previous = a.getScore();
+      }
+    }
+
+    // duplicates are rejected, and plain queues cannot withdraw
+    IndexedApplicationQueue queue = (IndexedApplicationQueue) position.shortlist();
+    Application any = queue.peek();
+    try {
+      queue.enqueue(new Application("b", any.getEmail(), 100));
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    // ... but the position rejects them before touching its queue, even within a batch
+    Application best = any;
+    for (Application a : queue) {
+      best = a; // the root may be evicted below, but not the last application
+    }
+    if (position.add(new Application("b", best.getEmail(), 100))) {
+      return false;
+    }
+    IntakeResult duplicates = position.addAll(Arrays.asList(
+        new Application("c", "fresh@gmail.com", 100), new Application("d", best.getEmail(), 100),
+        new Application("e", "fresh@gmail.com", 100)));
+    int queued = 0;
+    for (Application a : queue) {
+      queued += a.getScore();
+    }
+    if (duplicates.getAccepted() != 1 || duplicates.getRejected() != 2
+        || !queue.get("fresh@gmail.com").getName().equals("c")
+        || queue.get(best.getEmail()) != best || position.getTotalScore() != queued) {
+      return false;
+    }
+    try {
+      new OpenPosition("plain", 10).withdraw("a@gmail.com");
+      return false;
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    // an indexed queue stays indexed through a deep copy and a snapshot
+    if (queue.deepCopy().get(best.getEmail()) != best) {
+      return false;
+    }
+    try {
+      Path file = Files.createTempFile("position", ".snapshot");
+      try {
+        OpenPositionSnapshot.write(position, file, true);
+        OpenPosition restored = OpenPositionSnapshot.read(file);
+        if (!restored.withdraw(best.getEmail()) || restored.withdraw(best.getEmail())
+            || restored.getApplicationCount() != position.getApplicationCount() - 1) {
+          return false;
+        }
+      } finally {
+        Files.delete(file);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that 4-ary and 8-ary ApplicationQueues dequeue, replace and iterate over
+   * applications in the same score order as binary ones, and survive a snapshot.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testHeapArity() {
+    try {
+      new ApplicationQueue(10, TieBreak.NONE, 3);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    for (int arity : new int[] {4, 8}) {
+      Random random = new Random(300);
+      ApplicationQueue binary = new ApplicationQueue(500, TieBreak.ARRIVAL);
+      ApplicationQueue wide = new ApplicationQueue(500, TieBreak.ARRIVAL, arity);
+      for (int i = 0; i < 20000; i++) {
+        Application a = new Application("a" + i, "a" + i + "@gmail.com", random.nextInt(101));
+        if (random.nextInt(10) == 0 && !binary.isEmpty()) {
+          if (binary.dequeue() != wide.dequeue()) {
+            return false;
+          }
+        } else if (binary.offerIfBetter(a) != wide.offerIfBetter(a)) {
+          return false;
+        }
+      }
+      if (!binary.toString().equals(wide.toString())) {
+        return false;
+      }
+      try {
+        Path file = Files.createTempFile("position", ".snapshot");
+        try {
+          OpenPosition position = new OpenPosition("position", wide);
+          OpenPositionSnapshot.write(position, file, false);
+          ApplicationQueue restored =
+              (ApplicationQueue) OpenPositionSnapshot.read(file).shortlist();
+          if (restored.getArity() != arity || !restored.toString().equals(binary.toString())) {
+            return false;
+          }
+        } finally {
+          Files.delete(file);
+        }
+      } catch (IOException e) {
+        return false;
+      }
+      while (!binary.isEmpty()) {
+        if (binary.dequeue() != wide.dequeue()) {
+          return false;
+        }
+      }
+      if (!wide.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that IntakeMetrics counts the outcomes of add() and addAll(), follows the
+   * cut-off score, measures percolations, and can be read through JMX.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testIntakeMetrics() {
+    IntakeMetrics metrics = new IntakeMetrics();
+    OpenPosition position = new OpenPosition("metrics", 2);
+    position.setMetrics(metrics);
+    position.add(new Application("a", "a@gmail.com", 50));
+    position.add(new Application("b", "b@gmail.com", 60));
+    position.add(new Application("c", "c@gmail.com", 40));
+    position.add(new Application("d", "d@gmail.com", 70));
+    if (metrics.getAccepted() != 3 || metrics.getRejected() != 1 || metrics.getEvicted() != 1
+        || metrics.getFullQueueOffers() != 2 || metrics.getCutoffScore() != 60
+        || metrics.getCutoffRaises() != 2 || metrics.getAddLatency().getCount() != 4
+        || metrics.getSiftDepth().getCount() == 0) {
+      return false;
+    }
+    Application[] batch = {new Application("e", "e@gmail.com", 10),
+        new Application("f", "f@gmail.com", 90)};
+    position.addAll(batch, 0, batch.length);
+    position.getApplications();
+    if (metrics.getAccepted() != 4 || metrics.getRejected() != 2 || metrics.getEvicted() != 2
+        || metrics.getBatches() != 1 || metrics.getAddLatency().getCount() != 4
+        || metrics.getIterations() != 1 || metrics.getCutoffScore() != 70) {
+      return false;
+    }
+
+    // percentiles are known within 1/16 of their value
+    IntakeMetrics.Histogram histogram = new IntakeMetrics.Histogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    long median = histogram.getValueAtPercentile(50);
+    if (median < 500 || median > 500 + 500 / 16 || histogram.getValueAtPercentile(0) != 1
+        || histogram.getMean() != 500.5) {
+      return false;
+    }
+    try {
+      histogram.getValueAtPercentile(101);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    // stopping the measures leaves the counters as they are
+    position.setMetrics(null);
+    position.add(new Application("g", "g@gmail.com", 95));
+    if (metrics.getAccepted() != 4 || position.getMetrics() != null) {
+      return false;
+    }
+
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = metrics.register("metrics");
+      try {
+        if (!Long.valueOf(4).equals(server.getAttribute(name, "Accepted"))) {
+          return false;
+        }
+      } finally {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that IntakeServer answers pipelined and concurrent requests, pushes back
+   * when a mailbox is full, adds every queued application to its position before closing, and
+   * shares a bounded pool of writers between its positions when it runs without virtual threads.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testIntakeServer() {
+    OpenPosition position = new OpenPosition("dev", 3);
+    AtomicBoolean failed = new AtomicBoolean(false);
+    try (IntakeServer server = new IntakeServer(0, 4)) {
+      server.register(position);
+      server.start();
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+          BufferedReader in = new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+        socket.getOutputStream().write(("ops,a,a@gmail.com,50\ndev,a,a@gmail.com\n"
+            + "dev,a,agmail.com,50\ndev,a,a@gmail.com,101\n").getBytes(StandardCharsets.UTF_8));
+        socket.getOutputStream().flush();
+        for (String expected : new String[] {"UNKNOWN", "ERROR", "ERROR", "ERROR"}) {
+          if (!expected.equals(in.readLine())) {
+            return false;
+          }
+        }
+      }
+
+      // four clients submit the scores 0 .. 99, retrying while the mailbox is busy
+      Thread[] clients = new Thread[4];
+      for (int c = 0; c < clients.length; c++) {
+        int client = c;
+        clients[c] = new Thread(() -> {
+          try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+              BufferedReader in = new BufferedReader(
+                  new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < 25; i++) {
+              int score = client * 25 + i;
+              String response = "BUSY";
+              while (response.equals("BUSY")) {
+                socket.getOutputStream().write(("dev,c" + score + ",c" + score + "@gmail.com,"
+                    + score + "\n").getBytes(StandardCharsets.UTF_8));
+                response = in.readLine();
+                if (response == null) {
+                  failed.set(true);
+                  return;
+                }
+                if (response.equals("BUSY")) {
+                  Thread.sleep(1);
+                }
+              }
+              if (!response.equals("OK") && !response.equals("REJECTED")) {
+                failed.set(true);
+              }
+            }
+          } catch (IOException | InterruptedException e) {
+            failed.set(true);
+          }
+        });
+        clients[c].start();
+      }
+      for (Thread client : clients) {
+        client.join();
+      }
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+    if (failed.get() || !scores(position.getApplications()).equals(Arrays.asList(97, 98, 99))) {
+      return false;
+    }
+
+    // a failing listener does not stop the writer of its position, nor close()
+    OpenPosition ops = new OpenPosition("ops", 3);
+    ops.addIntakeListener(new IntakeListener() {
+      @Override
+      public void added(OpenPosition position, Application application) {
+        if (application.getName().equals("bad")) {
+          throw new UncheckedIOException(new IOException("disk full"));
+        }
+      }
+
+      @Override
+      public void removed(OpenPosition position, Application application) {
+        // nothing to do
+      }
+    });
+    IntakeServer server;
+    try {
+      server = new IntakeServer(0, 4);
+    } catch (IOException e) {
+      return false;
+    }
+    try (server) {
+      server.register(ops);
+      if (!server.submit("ops,bad,bad@gmail.com,60").equals("OK")) {
+        return false;
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (server.getFailedCount() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      if (!server.submit("ops,good,good@gmail.com,70").equals("OK")) {
+        return false;
+      }
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+    if (server.getFailedCount() != 1 || !(server.getLastFailure() instanceof UncheckedIOException)
+        || !ops.getApplications().contains("good@gmail.com")) {
+      return false;
+    }
+
+    // without virtual threads, connections get platform threads and 40 positions share 2 writers
+    Set<String> writers = ConcurrentHashMap.newKeySet();
+    IntakeListener threads = new IntakeListener() {
+      @Override
+      public void added(OpenPosition position, Application application) {
+        writers.add(Thread.currentThread().getName());
+      }
+
+      @Override
+      public void removed(OpenPosition position, Application application) {
+        // nothing to do
+      }
+    };
+    OpenPosition[] positions = new OpenPosition[40];
+    try (IntakeServer fallback = new IntakeServer(0, 8, 2, false)) {
+      for (int p = 0; p < positions.length; p++) {
+        positions[p] = new OpenPosition("p" + p, 2);
+        positions[p].addIntakeListener(threads);
+        fallback.register(positions[p]);
+      }
+      fallback.start();
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), fallback.getPort());
+          BufferedReader in = new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+        for (int score = 10; score < 15; score++) {
+          for (int p = 0; p < positions.length; p++) {
+            String response = "BUSY";
+            while (response.equals("BUSY")) {
+              socket.getOutputStream().write(("p" + p + ",c" + score + ",c" + score + "@gmail.com,"
+                  + score + "\n").getBytes(StandardCharsets.UTF_8));
+              response = in.readLine();
+              if (response == null) {
+                return false;
+              }
+              if (response.equals("BUSY")) {
+                Thread.sleep(1);
+              }
+            }
+          }
+        }
+        if (Thread.getAllStackTraces().keySet().stream()
+            .noneMatch(thread -> thread.getName().startsWith("intake-connection-"))) {
+          return false;
+        }
+      }
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+    for (OpenPosition shared : positions) {
+      if (!scores(shared.getApplications()).equals(Arrays.asList(13, 14))) {
+        return false;
+      }
+    }
+    return writers.size() <= 2
+        && writers.stream().allMatch(name -> name.startsWith("intake-writer-"));
+  }
+
+  /**
+   * This method tests that PositionRegistry creates positions on their first application, keeps
+   * the same shortlists as single OpenPositions when many threads add applications, and grows and
+   * removes positions.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testPositionRegistry() {
+    PositionRegistry registry = new PositionRegistry(4);
+    for (int p = 0; p < 1000; p++) {
+      if (!registry.define("p" + p, 5)) {
+        return false;
+      }
+    }
+    if (registry.define("p7", 3) || !registry.register(new OpenPosition("own", 2))
+        || registry.register(new OpenPosition("p1", 2)) || registry.size() != 1001
+        || !registry.contains("p999") || registry.contains("p1000")) {
+      return false;
+    }
+    try {
+      registry.add("p1000", new Application("a", "a@gmail.com", 50));
+      return false;
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+
+    // four threads add the scores 0 .. 99 to the first 100 positions, each to a shifted position
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      int thread = t;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 2500; i++) {
+          int score = thread * 25 + i % 25;
+          int p = (i / 25 + thread) % 100;
+          registry.add("p" + p, new Application("a" + score, "a" + score + "@gmail.com", score));
+        }
+      });
+      threads[t].start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+    int[] visited = new int[1];
+    boolean[] correct = {true};
+    registry.forEach(position -> {
+      visited[0]++;
+      if (!position.getPositionName().equals("own")
+          && !scores(position.getApplications()).equals(Arrays.asList(95, 96, 97, 98, 99))) {
+        correct[0] = false;
+      }
+    });
+    if (!correct[0] || visited[0] != 101) {
+      return false;
+    }
+
+    // a defined position is created when removed before any application
+    OpenPosition removed = registry.remove("p500");
+    return removed != null && removed.getApplicationCount() == 0 && registry.remove("p500") == null
+        && !registry.contains("p500") && registry.size() == 1000 && registry.contains("p499");
+  }
+
+  /**
+   * This method tests that DuplicateFilter recognizes resubmissions by their normalized email,
+   * keeps either the first submission or the best score, and forgets evicted applicants only with
+   * KEEP_BEST_SCORE.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testDuplicateFilter() {
+    OpenPosition first = new OpenPosition("first", 3);
+    first.add(new Application("z", "z@gmail.com", 10));
+    DuplicateFilter keepFirst = new DuplicateFilter(first, DuplicateFilter.Policy.KEEP_FIRST);
+    if (!keepFirst.add(new Application("a", "a@gmail.com", 50))
+        || keepFirst.add(new Application("a", " A@Gmail.com ", 90))
+        || keepFirst.add(new Application("z", "Z@gmail.com", 95))
+        || !keepFirst.add(new Application("b", "b@gmail.com", 60))
+        || !keepFirst.add(new Application("c", "c@gmail.com", 70))) {
+      return false;
+    }
+    // z was evicted by c, and d is rejected: neither can come back
+    if (keepFirst.add(new Application("d", "d@gmail.com", 5))
+        || keepFirst.add(new Application("d", "d@gmail.com", 99))
+        || keepFirst.add(new Application("z", "z@gmail.com", 99))
+        || keepFirst.getDuplicateCount() != 4
+        || !scores(first.getApplications()).equals(Arrays.asList(50, 60, 70))) {
+      return false;
+    }
+
+    try {
+      new DuplicateFilter(new OpenPosition("best", 3), DuplicateFilter.Policy.KEEP_BEST_SCORE);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    OpenPosition best = new OpenPosition("best", new IndexedApplicationQueue(3));
+    DuplicateFilter keepBest = new DuplicateFilter(best, DuplicateFilter.Policy.KEEP_BEST_SCORE);
+    Random random = new Random(21);
+    int[] bestScores = new int[50];
+    for (int i = 0; i < 500; i++) {
+      int applicant = random.nextInt(bestScores.length);
+      int score = random.nextInt(90);
+      bestScores[applicant] = Math.max(bestScores[applicant], score);
+      keepBest.add(new Application("a" + applicant, "A" + applicant + "@gmail.com ", score));
+    }
+    Arrays.sort(bestScores);
+    if (!scores(best.getApplications()).equals(Arrays.asList(bestScores[47], bestScores[48],
+        bestScores[49])) || keepBest.getDuplicateCount() == 0) {
+      return false;
+    }
+    // a resubmission with a better score rescores the applicant in place
+    if (!keepBest.add(new Application("x", "x@gmail.com", 95))
+        || keepBest.add(new Application("x", "X@gmail.com", 91))
+        || !keepBest.add(new Application("x", "X@gmail.com", 97))
+        || best.getMaxScore() != 97 || best.getApplicationCount() != 3) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that a WeightedRankKey orders applications by the weighted sum of their
+   * features, evaluates each feature once per application, in batches through addAll(), and keeps
+   * the first of two applications with the same rank.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testWeightedRankKey() {
+    int[] evaluations = new int[2]; // single and batch evaluations of the skills feature
+    WeightedRankKey.Feature skills = new WeightedRankKey.Feature() {
+      @Override
+      public double value(Application a) {
+        evaluations[0]++;
+        return a.getName().length() / 10.0;
+      }
+
+      @Override
+      public void values(Application[] batch, int from, int to, double[] values) {
+        evaluations[1]++;
+        for (int i = from; i < to; i++) {
+          values[i - from] = batch[i].getName().length() / 10.0;
+        }
+      }
+    };
+    WeightedRankKey rank = new WeightedRankKey(
+        new WeightedRankKey.Feature[] {WeightedRankKey.SCORE, skills}, new double[] {0.5, 0.5});
+    OpenPosition position = new OpenPosition("ranked", new ApplicationQueue(3, rank, 4));
+    position.add(new Application("abcdefghij", "a@gmail.com", 0)); // rank 0.5
+    position.add(new Application("b", "b@gmail.com", 90)); // rank 0.5, added later
+    position.add(new Application("cc", "c@gmail.com", 80)); // rank 0.5
+    position.add(new Application("ddddd", "d@gmail.com", 60)); // rank 0.55
+    if (evaluations[0] != 4 || position.getCutoffScore() != -1
+        || !scores(position.getApplications()).equals(Arrays.asList(90, 0, 60))) {
+      return false;
+    }
+
+    Application[] batch = new Application[100];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = new Application("e" + i, "e" + i + "@gmail.com", i);
+    }
+    IntakeResult result = position.addAll(batch, 0, batch.length);
+    if (evaluations[0] != 4 || evaluations[1] != 1 || result.getAccepted() < 3
+        || result.getEvicted() != result.getAccepted()
+        || position.getTotalScore() != 99 + 98 + 97) {
+      return false;
+    }
+
+    // only TieBreaks can be written to a snapshot
+    try {
+      Path file = Files.createTempFile("position", ".snapshot");
+      try {
+        OpenPositionSnapshot.write(position, file, false);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      } finally {
+        Files.delete(file);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+
+    IndexedApplicationQueue indexed = new IndexedApplicationQueue(2, rank, 2);
+    OpenPosition rescored = new OpenPosition("rescored", indexed);
+    rescored.add(new Application("f", "f@gmail.com", 50));
+    rescored.add(new Application("g", "g@gmail.com", 70));
+    return rescored.updateScore("g@gmail.com", 10) && indexed.peek().getName().equals("g")
+        && rescored.getTotalScore() == 60;
+  }
+
+  /**
+   * This method tests that removeIf() removes the matching applications from an ApplicationQueue,
+   * whether they are compacted at once or dropped lazily, keeps the remaining ones in order, and
+   * updates the index and the statistics of the position.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testRemoveIf() {
+    IndexedApplicationQueue queue = new IndexedApplicationQueue(1000, TieBreak.ARRIVAL, 4);
+    OpenPosition position = new OpenPosition("cleanup", queue);
+    ArrayList<Integer> expected = new ArrayList<Integer>();
+    int total = 0;
+    for (int i = 0; i < 1000; i++) {
+      String domain = i % 3 == 0 ? "@spam.com" : "@gmail.com";
+      position.add(new Application("a" + i, "a" + i + domain, i % 101));
+      if (i % 3 != 0) {
+        expected.add(i % 101);
+        total += i % 101;
+      }
+    }
+    // a third of the applications are removed, so the heap is compacted at once
+    if (position.removeIf(a -> a.getEmail().endsWith("@spam.com")) != 334
+        || queue.size() != 666 || position.getApplicationCount() != 666
+        || position.getTotalScore() != total || queue.contains("a0@spam.com")
+        || queue.get("a1@gmail.com") == null) {
+      return false;
+    }
+
+    // a few applications are removed, so they stay in the heap until they reach the root
+    if (position.removeIf(a -> a.getScore() == 1 || a.getName().equals("a500")) != 8
+        || queue.size() != 658 || queue.contains("a1@gmail.com")) {
+      return false;
+    }
+    expected.removeIf(score -> score == 1);
+    expected.remove(Integer.valueOf(500 % 101));
+    Collections.sort(expected);
+    for (int score : expected) {
+      if (queue.peek().getScore() == 1 || queue.dequeue().getScore() != score) {
+        return false;
+      }
+    }
+    if (!queue.isEmpty()) {
+      return false;
+    }
+
+    // a full queue with a removed application makes room for a new one
+    ApplicationQueue small = new ApplicationQueue(8, TieBreak.ARRIVAL, 2);
+    for (int i = 0; i < 8; i++) {
+      small.enqueue(new Application("b" + i, "b" + i + "@gmail.com", 50 + i));
+    }
+    if (small.removeIf(a -> a.getScore() == 55) != 1 || small.size() != 7) {
+      return false;
+    }
+    // an iterator built directly on the queue only sees the remaining applications
+    ArrayList<Integer> iterated = new ArrayList<Integer>();
+    for (ApplicationIterator it = new ApplicationIterator(small); it.hasNext();) {
+      iterated.add(it.next().getScore());
+    }
+    if (!iterated.equals(Arrays.asList(50, 51, 52, 53, 54, 56, 57))) {
+      return false;
+    }
+    small.enqueue(new Application("c", "c@gmail.com", 10));
+    if (small.size() != 8 || small.peek().getScore() != 10
+        || !scores(small.toString()).equals(Arrays.asList(10, 50, 51, 52, 53, 54, 56, 57))) {
+      return false;
+    }
+
+    // any other priority queue is drained and refilled
+    OpenPosition bucketed = new OpenPosition("bucketed", new BucketApplicationQueue(4));
+    bucketed.add(new Application("d", "d@gmail.com", 30));
+    bucketed.add(new Application("e", "e@spam.com", 40));
+    bucketed.add(new Application("f", "f@gmail.com", 20));
+    if (bucketed.removeIf(a -> a.getEmail().endsWith("@spam.com")) != 1
+        || bucketed.getTotalScore() != 50
+        || !scores(bucketed.getApplications()).equals(Arrays.asList(20, 30))) {
+      return false;
+    }
+    try {
+      bucketed.removeIf(null);
+      return false;
+    } catch (NullPointerException e) {
+      // expected
+    }
+    return true;
+  }
+
+  /**
+   * This method tests that an ApplicantDictionary interns the domains of the emails, gives back
+   * the names and emails it stores, including those outside Latin-1, and hands out flyweight
+   * applications which a PackedApplicationQueue takes back without looking them up.
+   * 
+   * @return true when this test verifies the functionality, and false otherwise
+   */
+  public static boolean testApplicantDictionary() {
+    ApplicantDictionary dictionary = new ApplicantDictionary();
+    for (int i = 0; i < 1000; i++) {
+      String domain = i % 2 == 0 ? "gmail.com" : "wisc.edu";
+      if (dictionary.intern("name" + i, "user" + i + "@" + domain) != i) {
+        return false;
+      }
+    }
+    int wide = dictionary.intern("\u00c9lodie \u5f20", "\u5f20@example.cn");
+    if (dictionary.intern("other", "user7@wisc.edu") != 7 || dictionary.size() != 1001
+        || dictionary.getDomainCount() != 2 || dictionary.find("user1000@gmail.com") != -1
+        || !dictionary.getName(7).equals("other")
+        || !dictionary.getEmail(dictionary.find("user998@gmail.com")).equals("user998@gmail.com")
+        || dictionary.getDomain(2) != dictionary.getDomain(4)
+        || !dictionary.getName(wide).equals("\u00c9lodie \u5f20")
+        || !dictionary.getDomain(wide).equals("example.cn")) {
+      return false;
+    }
+
+    // emails are checked as by the Application constructor
+    String[] invalid = {"no-at.com", "two@@gmail.com", "a@b@c.com"};
+    for (String email : invalid) {
+      try {
+        dictionary.application("bad", email, 50);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        new Application("bad", email, 50);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    if (dictionary.size() != 1001) {
+      return false;
+    }
+
+    // flyweights decode their name and email from the dictionary
+    Application flyweight = dictionary.application("caf\u00e9", "cafe@wisc.edu", 70);
+    if (!flyweight.toString().equals("caf\u00e9:cafe@wisc.edu:70") || dictionary.size() != 1002
+        || dictionary.getDomainCount() != 2) {
+      return false;
+    }
+    PackedApplicationQueue queue = new PackedApplicationQueue(2, dictionary);
+    queue.enqueue(flyweight);
+    queue.enqueue(dictionary.application(3, 40));
+    Application lowest = queue.dequeue();
+    if (dictionary.size() != 1002 || !lowest.getEmail().equals("user3@wisc.edu")
+        || lowest.getScore() != 40 || !queue.peek().getName().equals("caf\u00e9")
+        || lowest.getEmail() != lowest.getEmail()) {
+      return false;
+    }
+
+    // a resubmission under a corrected name replaces the recorded name, even across encodings
+    Application corrected = dictionary.application("Caf\u00e9 Bar", "cafe@wisc.edu", 80);
+    Application widened = dictionary.application("\u5f20", "user8@gmail.com", 10);
+    return dictionary.size() == 1002 && corrected.getName().equals("Caf\u00e9 Bar")
+        && dictionary.getEmail(dictionary.find("cafe@wisc.edu")).equals("cafe@wisc.edu")
+        && queue.peek().getName().equals("Caf\u00e9 Bar") && flyweight.getName().equals("caf\u00e9")
+        && widened.getName().equals("\u5f20") && widened.getEmail().equals("user8@gmail.com")
+        && dictionary.find("user8@gmail.com") == 8;
+  }
+
+  /**
+   * Returns the scores listed in the given String returned by OpenPosition.getApplications()
+   * 
+   * @param applications the String listing applications, one per line
+   * @return the scores of the listed applications, in the same order
+   */
+  private static List<Integer> scores(String applications) {
+    List<Integer> scores = new ArrayList<Integer>();
+    for (String line : applications.split("\n")) {
+      if (!line.isEmpty()) {
+        scores.add(Integer.parseInt(line.substring(line.lastIndexOf(':') + 1)));
+      }
+    }
+    return scores;
+  }
+
   /**
    * This method calls all the test methods defined and implemented in your OpenPositionTester
    * class.
@@ -348,7 +2231,16 @@ public class OpenPositionTester {
    */
   public static boolean runAllTests() {
     return testApplication() && testApplicationIterator() && testEnqueueDequeue()
-        && testCommonMethods() && testOpenPosition();
+        && testCommonMethods() && testOpenPosition() && testBucketApplicationQueue()
+        && testApplicationIteratorInPlace() && testOpenPositionStatistics() && testAddAll()
+        && testReplaceTop() && testConcurrentOpenPosition()
+        && testPackedApplicationQueue() && testTieBreak() && testMatchingEngine()
+        && testAddAllParallel() && testApplicationLoader()
+        && testOpenPositionSnapshot() && testIntakeJournal()
+        && testWindowedOpenPosition() && testIndexedApplicationQueue() && testHeapArity()
+        && testIntakeMetrics() && testIntakeServer() && testPositionRegistry()
+        && testDuplicateFilter() && testWeightedRankKey() && testRemoveIf()
+        && testApplicantDictionary();
   }
 
   /**
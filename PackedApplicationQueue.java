@@ -0,0 +1,475 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Array-based heap implementation of a priority queue containing Applications, which stores each
+ * Application as a single packed long instead of an object reference. The score of the Application
+ * is stored in the high 32 bits, and the id of the applicant in an ApplicantDictionary in the low
+ * 32 bits, so the heap is a plain long[] and percolating compares primitives only.
+ *
+ * Names and emails live in the dictionary, which can be shared by many queues. A shared dictionary
+ * keeps every applicant any of its queues ever accepted, evicted ones included, so it grows with
+ * the number of distinct applicants of the stream. A queue created with its own dictionary
+ * compacts it instead: once the dictionary holds twice as many applicants as the capacity of the
+ * queue (and at least MIN_COMPACTED_SIZE), it is replaced by a copy holding only the queued
+ * applicants, so it never holds more than max(2 * capacity, MIN_COMPACTED_SIZE) applicants, and
+ * compacting costs O(1) amortized per accepted applicant.
+ *
+ * The Applications returned by dequeue(), peek() or an iterator are flyweights of the dictionary,
+ * which decode their name and email only when asked for them: they have the same email and score
+ * as the enqueued ones, and the latest name the dictionary was given for this email, but are
+ * other objects, and Application does not override equals().
+ * Flyweights of the same dictionary are enqueued again without looking up their email.
+ *
+ * Among Applications with the same score, the applicant who was added to the dictionary first has
+ * the higher priority. To make this ordering a single comparison, the low 32 bits hold the
+ * complement of the applicant id. Compacting keeps the order of the queued applicants, but an
+ * evicted applicant who applies again after a compaction is a new applicant.
+ */
+public class PackedApplicationQueue implements ShortlistQueue {
+  static final int MIN_COMPACTED_SIZE = 1 << 10; // smallest dictionary size which is compacted
+
+  private long[] queue; // array min-heap of packed applications representing this priority queue
+  private int size; // size of this priority queue
+  private int modCount; // number of structural modifications, used by iterators to fail fast
+  private ApplicantDictionary dictionary; // names and emails of the queued applicants
+  private final boolean compacting; // whether this queue owns its dictionary, and compacts it
+
+  /**
+   * Creates a new empty PackedApplicationQueue with the given capacity, storing its applicants in
+   * a dictionary of its own, which it compacts
+   *
+   * @param capacity Capacity of this PackedApplicationQueue
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   */
+  public PackedApplicationQueue(int capacity) throws IllegalArgumentException {
+    this(capacity, new ApplicantDictionary(), true);
+  }
+
+  /**
+   * Creates a new empty PackedApplicationQueue with the given capacity, storing its applicants in
+   * the given dictionary
+   *
+   * @param capacity   Capacity of this PackedApplicationQueue
+   * @param dictionary dictionary holding the names and emails of the applicants
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   * @throws NullPointerException     if the dictionary is null
+   */
+  public PackedApplicationQueue(int capacity, ApplicantDictionary dictionary)
+      throws IllegalArgumentException, NullPointerException {
+    this(capacity, dictionary, false);
+  }
+
+  /**
+   * Creates a new empty PackedApplicationQueue with the given capacity, storing its applicants in
+   * the given dictionary
+   *
+   * @param capacity   Capacity of this PackedApplicationQueue
+   * @param dictionary dictionary holding the names and emails of the applicants
+   * @param compacting whether this queue owns the dictionary, and compacts it
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   * @throws NullPointerException     if the dictionary is null
+   */
+  private PackedApplicationQueue(int capacity, ApplicantDictionary dictionary, boolean compacting)
+      throws IllegalArgumentException, NullPointerException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("invalid capacity");
+    }
+    if (dictionary == null) {
+      throw new NullPointerException("dictionary is null");
+    }
+    queue = new long[capacity];
+    size = 0;
+    this.dictionary = dictionary;
+    this.compacting = compacting;
+  }
+
+  /**
+   * Packs the given score and applicant id into a single long
+   *
+   * @param score       score of the applicant
+   * @param applicantId id of the applicant in the dictionary
+   * @return the packed application
+   */
+  public static long pack(int score, int applicantId) {
+    return ((long) score << 32) | (~applicantId & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the score of the given packed application
+   *
+   * @param packed a packed application
+   * @return its score
+   */
+  public static int scoreOf(long packed) {
+    return (int) (packed >>> 32);
+  }
+
+  /**
+   * Returns the applicant id of the given packed application
+   *
+   * @param packed a packed application
+   * @return its applicant id
+   */
+  public static int applicantOf(long packed) {
+    return ~(int) packed;
+  }
+
+  /**
+   * Returns the dictionary holding the names and emails of the applicants of this queue. A queue
+   * owning its dictionary replaces it when it compacts it, so the ids of the previous one must not
+   * be passed to enqueuePacked() anymore.
+   *
+   * @return the dictionary of this queue
+   */
+  public ApplicantDictionary getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * Checks whether this PackedApplicationQueue is empty
+   *
+   * @return {@code true} if this PackedApplicationQueue is empty
+   */
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the size of this PackedApplicationQueue
+   *
+   * @return the size of this PackedApplicationQueue
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the capacity of this PackedApplicationQueue
+   *
+   * @return the maximum number of Applications this PackedApplicationQueue can hold
+   */
+  @Override
+  public int capacity() {
+    return queue.length;
+  }
+
+  /**
+   * Adds the given packed application to this PackedApplicationQueue
+   *
+   * @param packed packed application to add, as returned by pack()
+   * @throws IllegalStateException with a descriptive error message if this queue is full
+   */
+  public void enqueuePacked(long packed) throws IllegalStateException {
+    if (size == queue.length) {
+      throw new IllegalStateException("queue is full");
+    }
+    percolateUp(size, packed);
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Removes and returns the packed application at the root of this PackedApplicationQueue
+   *
+   * @return the packed application with the smallest score
+   * @throws NoSuchElementException with a descriptive error message if this queue is empty
+   */
+  public long dequeuePacked() throws NoSuchElementException {
+    if (size == 0) {
+      throw new NoSuchElementException("queue is empty");
+    }
+    long lowest = queue[0];
+    size--;
+    if (size > 0) {
+      percolateDown(0, queue[size]);
+    }
+    modCount++;
+    return lowest;
+  }
+
+  /**
+   * Returns the packed application at the root of this PackedApplicationQueue
+   *
+   * @return the packed application with the smallest score
+   * @throws NoSuchElementException with a descriptive error message if this queue is empty
+   */
+  public long peekPacked() throws NoSuchElementException {
+    if (size == 0) {
+      throw new NoSuchElementException("queue is empty");
+    }
+    return queue[0];
+  }
+
+  /**
+   * Adds the given packed application if this queue is not full, or replaces the root with it if
+   * it has a higher priority than the root.
+   *
+   * @param packed packed application to add, as returned by pack()
+   * @return {@code true} if the packed application was added, {@code false} otherwise
+   */
+  public boolean offerPackedIfBetter(long packed) {
+    if (size < queue.length) {
+      enqueuePacked(packed);
+      return true;
+    }
+    if (queue[0] < packed) {
+      percolateDown(0, packed);
+      modCount++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Adds the given Application to this PackedApplicationQueue, adding its applicant to the
+   * dictionary if needed.
+   *
+   * @param o Application to add to this PackedApplicationQueue
+   * @throws NullPointerException  if the given Application is null
+   * @throws IllegalStateException with a descriptive error message if this queue is full
+   */
+  @Override
+  public void enqueue(Application o) throws NullPointerException, IllegalStateException {
+    if (o == null) {
+      throw new NullPointerException("application is null");
+    }
+    if (size == queue.length) {
+      throw new IllegalStateException("queue is full");
+    }
+    enqueuePacked(pack(o.getScore(), intern(o)));
+  }
+
+  /**
+   * Removes and returns the Application at the root of this PackedApplicationQueue, i.e. the
+   * Application with the lowest score.
+   *
+   * @return the Application in this PackedApplicationQueue with the smallest score
+   * @throws NoSuchElementException with a descriptive error message if this queue is empty
+   */
+  @Override
+  public Application dequeue() throws NoSuchElementException {
+    return unpack(dequeuePacked());
+  }
+
+  /**
+   * Returns the Application at the root of this PackedApplicationQueue, i.e. the Application with
+   * the lowest score.
+   *
+   * @return the Application in this PackedApplicationQueue with the smallest score
+   * @throws NoSuchElementException if this queue is empty
+   */
+  @Override
+  public Application peek() throws NoSuchElementException {
+    return unpack(peekPacked());
+  }
+
+  /**
+   * Returns the score of the Application at the root of this PackedApplicationQueue, read from
+   * its packed application without building the Application
+   *
+   * @return the lowest score of this queue
+   * @throws NoSuchElementException with a descriptive error message if this queue is empty
+   */
+  @Override
+  public int peekScore() throws NoSuchElementException {
+    return scoreOf(peekPacked());
+  }
+
+  /**
+   * Replaces the Application at the root of this PackedApplicationQueue with the given
+   * Application, and returns the replaced one.
+   *
+   * @param o Application to add to this PackedApplicationQueue
+   * @return the Application which was removed from the root, i.e. the one with the smallest score
+   * @throws NullPointerException   if the given Application is null
+   * @throws NoSuchElementException with a descriptive error message if this queue is empty
+   */
+  @Override
+  public Application replaceTop(Application o) throws NullPointerException, NoSuchElementException {
+    if (o == null) {
+      throw new NullPointerException("application is null");
+    }
+    if (size == 0) {
+      throw new NoSuchElementException("queue is empty");
+    }
+    int id = intern(o); // before the root is read, since compacting renumbers it
+    long lowest = queue[0];
+    percolateDown(0, pack(o.getScore(), id));
+    modCount++;
+    return unpack(lowest);
+  }
+
+  /**
+   * Adds the given Application to this PackedApplicationQueue if it is not full, or replaces its
+   * root with the given Application if it has a higher priority. A rejected applicant is not added
+   * to the dictionary.
+   *
+   * @param o Application to add to this PackedApplicationQueue
+   * @return {@code true} if the given Application was added, {@code false} otherwise
+   * @throws NullPointerException if the given Application is null
+   */
+  @Override
+  public boolean offerIfBetter(Application o) throws NullPointerException {
+    if (o == null) {
+      throw new NullPointerException("application is null");
+    }
+    if (size == queue.length) {
+      int lowestScore = scoreOf(queue[0]);
+      if (o.getScore() < lowestScore) {
+        return false;
+      }
+      if (o.getScore() == lowestScore) {
+        // a new applicant would get the highest id, hence the lowest priority among equal scores
+        int id = dictionary.find(o);
+        return id >= 0 && offerPackedIfBetter(pack(o.getScore(), id));
+      }
+    }
+    return offerPackedIfBetter(pack(o.getScore(), intern(o)));
+  }
+
+  /**
+   * Returns the id of the applicant of the given Application, adding it to the dictionary if
+   * needed. A dictionary owned by this queue is compacted first if it is large enough.
+   *
+   * @param o the Application about to be stored
+   * @return the id of its applicant
+   */
+  private int intern(Application o) {
+    if (compacting && dictionary.size() >= Math.max(2 * queue.length, MIN_COMPACTED_SIZE)) {
+      compact();
+    }
+    return dictionary.intern(o);
+  }
+
+  /**
+   * Replaces the dictionary of this queue with a copy holding only the queued applicants, and
+   * stores their new ids in the heap. The new ids are in the same order as the old ones, so the
+   * heap stays valid.
+   */
+  private void compact() {
+    int[] kept = new int[size];
+    for (int i = 0; i < size; i++) {
+      kept[i] = applicantOf(queue[i]);
+    }
+    Arrays.sort(kept);
+    int count = 0;
+    for (int id : kept) {
+      if (count == 0 || kept[count - 1] != id) {
+        kept[count++] = id;
+      }
+    }
+    dictionary = dictionary.retain(kept, count);
+    for (int i = 0; i < size; i++) {
+      int id = Arrays.binarySearch(kept, 0, count, applicantOf(queue[i]));
+      queue[i] = pack(scoreOf(queue[i]), id);
+    }
+  }
+
+  /**
+   * Returns a flyweight of the Application stored as the given packed application
+   *
+   * @param packed a packed application of this queue
+   * @return the corresponding Application
+   */
+  private Application unpack(long packed) {
+    return dictionary.application(applicantOf(packed), scoreOf(packed));
+  }
+
+  /**
+   * Moves the hole at index i up the heap until the given packed application can be stored there
+   * without violating the min-heap invariant, and stores it.
+   *
+   * @param i      index of the hole
+   * @param packed packed application to store
+   */
+  private void percolateUp(int i, long packed) {
+    int curr = i;
+    while (curr > 0 && packed < queue[(curr - 1) / 2]) {
+      queue[curr] = queue[(curr - 1) / 2];
+      curr = (curr - 1) / 2;
+    }
+    queue[curr] = packed;
+  }
+
+  /**
+   * Moves the hole at index i down the heap until the given packed application can be stored
+   * there without violating the min-heap invariant, and stores it.
+   *
+   * @param i      index of the hole
+   * @param packed packed application to store
+   */
+  private void percolateDown(int i, long packed) {
+    int curr = i;
+    int child;
+    while ((child = curr * 2 + 1) < size) {
+      if (child + 1 < size && queue[child + 1] < queue[child]) {
+        child++;
+      }
+      if (packed <= queue[child]) {
+        break;
+      }
+      queue[curr] = queue[child];
+      curr = child;
+    }
+    queue[curr] = packed;
+  }
+
+  /**
+   * Returns a String representing this PackedApplicationQueue, where each element (application)
+   * of the queue is listed on a separate line, in order from the lowest score to the highest
+   * score.
+   *
+   * @return a String representing this PackedApplicationQueue
+   */
+  @Override
+  public String toString() {
+    StringBuilder val = new StringBuilder();
+
+    for (Application a : this) {
+      val.append(a).append("\n");
+    }
+
+    return val.toString();
+  }
+
+  /**
+   * Returns an Iterator for this PackedApplicationQueue which proceeds from the lowest-scored to
+   * the highest-scored Application. The iterator sorts a copy of the packed applications, which
+   * only holds primitives, and fails fast if the queue is modified while iterating.
+   *
+   * @return an Iterator for this PackedApplicationQueue
+   */
+  @Override
+  public Iterator<Application> iterator() {
+    long[] sorted = Arrays.copyOf(queue, size);
+    Arrays.sort(sorted);
+    int expectedModCount = modCount;
+    return new Iterator<Application>() {
+      private int next = 0; // index of the next packed application in sorted
+
+      @Override
+      public boolean hasNext() {
+        return next < sorted.length;
+      }
+
+      @Override
+      public Application next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException("queue modified during iteration");
+        }
+        if (!hasNext()) {
+          throw new NoSuchElementException("No more elements in this iteration");
+        }
+        return unpack(sorted[next++]);
+      }
+    };
+  }
+}
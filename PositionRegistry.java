@@ -0,0 +1,378 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe index of many OpenPositions by name, which any number of threads can look up and
+ * add Applications through.
+ *
+ * Positions are spread over shards by the hash of their name. Each shard is a hash table whose
+ * chains are immutable: lookups read the table without locking, while changes to a shard rebuild
+ * the affected chain under the lock of this shard only, and publish it atomically. Applications
+ * added to the same position are serialized on that position alone.
+ *
+ * A position can be defined by its name and capacity only: its OpenPosition, and the priority
+ * queue holding its shortlist, are created on its first Application. Postings which never receive
+ * any Application thus cost a few objects each. The positions of a registry must only be modified
+ * through it.
+ */
+public class PositionRegistry {
+  private static final int INITIAL_BUCKETS = 16; // number of buckets of a new shard
+
+  private final Shard[] shards;
+
+  /**
+   * A position of this registry, which may not be created yet
+   */
+  private static class Posting {
+    private final String name;
+    private final int capacity; // the number of vacancies
+    private final TieBreak tieBreak; // how Applications with the same score are ordered
+    private OpenPosition position; // created on the first Application, guarded by this posting
+
+    private Posting(String name, int capacity, TieBreak tieBreak, OpenPosition position) {
+      this.name = name;
+      this.capacity = capacity;
+      this.tieBreak = tieBreak;
+      this.position = position;
+    }
+  }
+
+  /**
+   * An immutable link of a chain of postings
+   */
+  private static class Node {
+    private final int hash;
+    private final Posting posting;
+    private final Node next;
+
+    private Node(int hash, Posting posting, Node next) {
+      this.hash = hash;
+      this.posting = posting;
+      this.next = next;
+    }
+  }
+
+  /**
+   * A hash table of postings, read without locking and modified under its lock
+   */
+  private static class Shard {
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile AtomicReferenceArray<Node> table = new AtomicReferenceArray<Node>(
+        INITIAL_BUCKETS); // chains of postings, replaced when the shard grows
+    private volatile int count; // number of postings in this shard
+  }
+
+  /**
+   * Creates a new empty PositionRegistry with four shards per available processor (rounded up to
+   * a power of two).
+   */
+  public PositionRegistry() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  /**
+   * Creates a new empty PositionRegistry with at least the given number of shards (rounded up to a
+   * power of two).
+   *
+   * @param shards the number of shards positions are spread over
+   * @throws IllegalArgumentException with a descriptive error message if the number of shards is
+   *                                  not a positive integer
+   */
+  public PositionRegistry(int shards) throws IllegalArgumentException {
+    if (shards <= 0 || shards > 1 << 16) {
+      throw new IllegalArgumentException("invalid number of shards");
+    }
+    int length = Integer.highestOneBit(shards);
+    if (length < shards) {
+      length <<= 1;
+    }
+    this.shards = new Shard[length];
+    for (int i = 0; i < length; i++) {
+      this.shards[i] = new Shard();
+    }
+  }
+
+  /**
+   * Defines a position with the given name and capacity, whose OpenPosition is only created on
+   * its first Application
+   *
+   * @param positionName the name of the position
+   * @param capacity     the number of vacancies of the position
+   * @return {@code false} if a position with this name already exists, {@code true} otherwise
+   * @throws NullPointerException     if the name is null
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   */
+  public boolean define(String positionName, int capacity)
+      throws NullPointerException, IllegalArgumentException {
+    return define(positionName, capacity, TieBreak.NONE);
+  }
+
+  /**
+   * Defines a position with the given name and capacity, which orders Applications with the same
+   * score according to the given tie-break. Its OpenPosition is only created on its first
+   * Application.
+   *
+   * @param positionName the name of the position
+   * @param capacity     the number of vacancies of the position
+   * @param tieBreak     how Applications with the same score are ordered
+   * @return {@code false} if a position with this name already exists, {@code true} otherwise
+   * @throws NullPointerException     if the name or the tie-break is null
+   * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+   *                                  positive integer
+   */
+  public boolean define(String positionName, int capacity, TieBreak tieBreak)
+      throws NullPointerException, IllegalArgumentException {
+    if (positionName == null) {
+      throw new NullPointerException("name is null");
+    }
+    if (tieBreak == null) {
+      throw new NullPointerException("tie-break is null");
+    }
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("invalid capacity");
+    }
+    return insert(new Posting(positionName, capacity, tieBreak, null));
+  }
+
+  /**
+   * Adds the given position to this registry, under its name
+   *
+   * @param position the position to add
+   * @return {@code false} if a position with the same name already exists, {@code true} otherwise
+   * @throws NullPointerException if the position or its name is null
+   */
+  public boolean register(OpenPosition position) throws NullPointerException {
+    if (position == null) {
+      throw new NullPointerException("position is null");
+    }
+    if (position.getPositionName() == null) {
+      throw new NullPointerException("name is null");
+    }
+    return insert(new Posting(position.getPositionName(), position.shortlist().capacity(), null,
+        position));
+  }
+
+  /**
+   * Tries to add the given Application to the position with the given name, creating the
+   * OpenPosition on its first Application. Threads adding to different positions do not wait for
+   * each other.
+   *
+   * @param positionName the name of the position
+   * @param application  the Application to add
+   * @return whether the Application was added to the position
+   * @throws NullPointerException   if the name or the Application is null
+   * @throws NoSuchElementException with a descriptive error message if no position has this name
+   */
+  public boolean add(String positionName, Application application)
+      throws NullPointerException, NoSuchElementException {
+    if (application == null) {
+      throw new NullPointerException("application is null");
+    }
+    Posting posting = find(positionName);
+    if (posting == null) {
+      throw new NoSuchElementException("unknown position");
+    }
+    synchronized (posting) {
+      return positionOf(posting).add(application);
+    }
+  }
+
+  /**
+   * Checks whether a position with the given name exists, whether or not its OpenPosition was
+   * created. This method does not lock.
+   *
+   * @param positionName the name of the position
+   * @return {@code true} if a position with this name exists
+   * @throws NullPointerException if the name is null
+   */
+  public boolean contains(String positionName) throws NullPointerException {
+    return find(positionName) != null;
+  }
+
+  /**
+   * Removes the position with the given name from this registry
+   *
+   * @param positionName the name of the position
+   * @return the removed position, created if it had not received any Application yet, or null if
+   *         no position has this name
+   * @throws NullPointerException if the name is null
+   */
+  public OpenPosition remove(String positionName) throws NullPointerException {
+    int hash = hash(positionName);
+    Shard shard = shardOf(hash);
+    Node found;
+    shard.lock.lock();
+    try {
+      AtomicReferenceArray<Node> table = shard.table;
+      int bucket = hash & (table.length() - 1);
+      Node head = table.get(bucket);
+      found = head;
+      while (found != null && !(found.hash == hash && found.posting.name.equals(positionName))) {
+        found = found.next;
+      }
+      if (found == null) {
+        return null;
+      }
+      // copy the nodes before the removed one, and share the ones after it
+      Node chain = found.next;
+      for (Node node = head; node != found; node = node.next) {
+        chain = new Node(node.hash, node.posting, chain);
+      }
+      table.set(bucket, chain);
+      shard.count--;
+    } finally {
+      shard.lock.unlock();
+    }
+    synchronized (found.posting) {
+      return positionOf(found.posting);
+    }
+  }
+
+  /**
+   * Returns the number of positions of this registry
+   *
+   * @return the number of positions, whether or not their OpenPosition was created
+   */
+  public int size() {
+    int size = 0;
+    for (Shard shard : shards) {
+      size += shard.count;
+    }
+    return size;
+  }
+
+  /**
+   * Calls the given action on every position which received an Application or was registered.
+   * No shard is locked: each position is locked while the action reads it, so only Applications
+   * to this position wait meanwhile. Positions added or removed during the walk may or may not be
+   * visited.
+   *
+   * @param action the action to call on each position
+   * @throws NullPointerException if the action is null
+   */
+  public void forEach(Consumer<OpenPosition> action) throws NullPointerException {
+    if (action == null) {
+      throw new NullPointerException("action is null");
+    }
+    for (Shard shard : shards) {
+      AtomicReferenceArray<Node> table = shard.table;
+      for (int i = 0; i < table.length(); i++) {
+        for (Node node = table.get(i); node != null; node = node.next) {
+          synchronized (node.posting) {
+            if (node.posting.position != null) {
+              action.accept(node.posting.position);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the OpenPosition of the given posting, creating it if needed. The caller must hold the
+   * monitor of the posting.
+   *
+   * @param posting the posting
+   * @return the OpenPosition of this posting
+   */
+  private static OpenPosition positionOf(Posting posting) {
+    if (posting.position == null) {
+      posting.position = new OpenPosition(posting.name, posting.capacity, posting.tieBreak);
+    }
+    return posting.position;
+  }
+
+  /**
+   * Finds the posting with the given name without locking
+   *
+   * @param positionName the name of the position
+   * @return the posting with this name, or null if there is none
+   * @throws NullPointerException if the name is null
+   */
+  private Posting find(String positionName) throws NullPointerException {
+    int hash = hash(positionName);
+    AtomicReferenceArray<Node> table = shardOf(hash).table;
+    for (Node node = table.get(hash & (table.length() - 1)); node != null; node = node.next) {
+      if (node.hash == hash && node.posting.name.equals(positionName)) {
+        return node.posting;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Inserts the given posting, unless its shard already has one with the same name
+   *
+   * @param posting the posting to insert
+   * @return {@code true} if the posting was inserted
+   */
+  private boolean insert(Posting posting) {
+    int hash = hash(posting.name);
+    Shard shard = shardOf(hash);
+    shard.lock.lock();
+    try {
+      AtomicReferenceArray<Node> table = shard.table;
+      int bucket = hash & (table.length() - 1);
+      for (Node node = table.get(bucket); node != null; node = node.next) {
+        if (node.hash == hash && node.posting.name.equals(posting.name)) {
+          return false;
+        }
+      }
+      if (shard.count >= table.length() - (table.length() >>> 2)) {
+        table = grow(shard);
+        bucket = hash & (table.length() - 1);
+      }
+      table.set(bucket, new Node(hash, posting, table.get(bucket)));
+      shard.count++;
+      return true;
+    } finally {
+      shard.lock.unlock();
+    }
+  }
+
+  /**
+   * Doubles the number of buckets of the given shard. The caller must hold the lock of the shard;
+   * readers keep walking the old table until the new one is published.
+   *
+   * @param shard the shard to grow
+   * @return the new table of the shard
+   */
+  private static AtomicReferenceArray<Node> grow(Shard shard) {
+    AtomicReferenceArray<Node> old = shard.table;
+    AtomicReferenceArray<Node> table = new AtomicReferenceArray<Node>(old.length() * 2);
+    for (int i = 0; i < old.length(); i++) {
+      for (Node node = old.get(i); node != null; node = node.next) {
+        int bucket = node.hash & (table.length() - 1);
+        table.set(bucket, new Node(node.hash, node.posting, table.get(bucket)));
+      }
+    }
+    shard.table = table;
+    return table;
+  }
+
+  /**
+   * Returns the shard holding the postings with the given hash. Shards are chosen by the highest
+   * bits of the hash, and buckets by the lowest ones.
+   *
+   * @param hash the hash of a position name
+   * @return the shard of this hash
+   */
+  private Shard shardOf(int hash) {
+    return shards[(hash >>> 16) & (shards.length - 1)];
+  }
+
+  /**
+   * Returns the hash of the given position name, with its bits spread
+   *
+   * @param positionName the name of the position
+   * @return the hash of this name
+   * @throws NullPointerException if the name is null
+   */
+  private static int hash(String positionName) throws NullPointerException {
+    int h = positionName.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
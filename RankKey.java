@@ -0,0 +1,48 @@
+/**
+ * Computes the rank key of an Application when it is added to an ApplicationQueue: a long which
+ * the heap compares instead of the Application, so that the ranking is evaluated once per
+ * Application and never while percolating. A higher rank key means a higher priority, i.e. the
+ * Application with the lowest rank key is the first to leave the queue.
+ *
+ * Each TieBreak is a RankKey ordering Applications by score. WeightedRankKey orders them by a
+ * weighted sum of features instead.
+ */
+public interface RankKey {
+  /**
+   * Returns the rank key of the given Application
+   *
+   * @param a        the Application to rank
+   * @param sequence number of Applications added to the queue before this one
+   * @return the rank key of the Application
+   */
+  public long key(Application a, long sequence);
+
+  /**
+   * Compares two Applications which have the same rank key. By default, they are equal.
+   *
+   * @param a the first Application
+   * @param b the second Application
+   * @return a negative integer if a has a lower priority than b, {@code 0} if they are equal, and
+   *         a positive integer if a has a higher priority than b
+   */
+  public default int compareEqualKeys(Application a, Application b) {
+    return 0;
+  }
+
+  /**
+   * Computes the rank keys of the Applications from index from (inclusive) to index to (exclusive)
+   * of the given array, as if they were added one by one in order. Implementations can override
+   * this method to evaluate their ranking over the whole batch at once.
+   *
+   * @param batch    the array holding the Applications to rank
+   * @param from     index of the first Application to rank
+   * @param to       index after the last Application to rank
+   * @param sequence number of Applications added to the queue before the first one
+   * @param keys     receives the rank key of batch[i] at index i - from
+   */
+  public default void keys(Application[] batch, int from, int to, long sequence, long[] keys) {
+    for (int i = from; i < to; i++) {
+      keys[i - from] = key(batch[i], sequence + (i - from));
+    }
+  }
+}
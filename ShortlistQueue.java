@@ -0,0 +1,51 @@
+import java.util.NoSuchElementException;
+
+/**
+ * A bounded priority queue of Applications which an OpenPosition keeps its shortlist in. The root
+ * of a non-empty ShortlistQueue is always the Application with the lowest score, and iterating over
+ * it proceeds from the lowest-scored to the highest-scored Application.
+ */
+public interface ShortlistQueue extends PriorityQueueADT<Application>, Iterable<Application> {
+
+  /**
+   * Returns the maximum number of Applications this queue can hold
+   * 
+   * @return the capacity of this queue
+   */
+  public int capacity();
+
+  /**
+   * Replaces the Application at the root of this queue, i.e. the Application with the lowest
+   * score, with the given Application, and returns the replaced one. This is equivalent to a
+   * dequeue() followed by an enqueue(), but restores the queue invariant in a single pass.
+   * 
+   * @param o Application to add to this queue
+   * @return the Application which was removed from the root of this queue
+   * @throws NullPointerException   if the given Application is null
+   * @throws NoSuchElementException if this queue is empty
+   */
+  public Application replaceTop(Application o) throws NullPointerException, NoSuchElementException;
+
+  /**
+   * Adds the given Application to this queue if it is not full, or replaces the root of this
+   * queue with it if it has a higher score than the root. Unlike enqueue(), this method does not
+   * throw an exception when this queue is full.
+   * 
+   * @param o Application to add to this queue
+   * @return {@code true} if the given Application was added, {@code false} otherwise
+   * @throws NullPointerException if the given Application is null
+   */
+  public boolean offerIfBetter(Application o) throws NullPointerException;
+
+  /**
+   * Returns the score of the Application at the root of this queue, i.e. the lowest score.
+   * Queues which do not store Application objects should override this method, so that the
+   * cut-off score of a position is read without building an Application.
+   * 
+   * @return the lowest score of this queue
+   * @throws NoSuchElementException if this queue is empty
+   */
+  public default int peekScore() throws NoSuchElementException {
+    return peek().getScore();
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * The ways an ApplicationQueue can order Applications with the same score. Each Application is
+ * given a rank key when it is added to the queue: a long holding its score in the high bits and a
+ * secondary key in the low bits, so that ordering two Applications is a single comparison of
+ * their rank keys. A higher rank key means a higher priority, i.e. the Application with the
+ * lowest rank key is the first to leave the queue.
+ */
+public enum TieBreak implements RankKey {
+  /**
+   * Applications with the same score are equal, as with Application.compareTo(). Which of them
+   * leaves the queue first depends on the layout of the heap.
+   */
+  NONE,
+
+  /**
+   * Among Applications with the same score, the one added to the queue first has the higher
+   * priority (first come, first kept), so the most recent one leaves the queue first.
+   */
+  ARRIVAL,
+
+  /**
+   * Among Applications with the same score, the one whose name comes first in lexicographic order
+   * has the higher priority.
+   */
+  NAME,
+
+  /**
+   * Among Applications with the same score, the one whose email comes first in lexicographic
+   * order has the higher priority.
+   */
+  EMAIL;
+
+  static final int SCORE_SHIFT = 56; // the score is stored above the 56 bits of secondary key
+  static final long TIE_MASK = (1L << SCORE_SHIFT) - 1; // bits of the secondary key
+  private static final int PREFIX_CHARS = 7; // characters of a name or email in the rank key
+
+  /**
+   * Returns the rank key of the given Application
+   *
+   * @param a        the Application to rank
+   * @param sequence number of Applications added to the queue before this one
+   * @return the rank key of the Application
+   */
+  @Override
+  public long key(Application a, long sequence) {
+    long tie;
+    switch (this) {
+      case ARRIVAL:
+        tie = TIE_MASK - (sequence & TIE_MASK);
+        break;
+      case NAME:
+        tie = TIE_MASK - prefix(a.getName());
+        break;
+      case EMAIL:
+        tie = TIE_MASK - prefix(a.getEmail());
+        break;
+      default:
+        tie = 0;
+    }
+    return ((long) a.getScore() << SCORE_SHIFT) | tie;
+  }
+
+  /**
+   * Compares two Applications which have the same rank key. Since a rank key only holds the first
+   * characters of a name or email, those are compared in full; in any other case the Applications
+   * are equal.
+   *
+   * @param a the first Application
+   * @param b the second Application
+   * @return a negative integer if a has a lower priority than b, {@code 0} if they are equal, and
+   *         a positive integer if a has a higher priority than b
+   */
+  @Override
+  public int compareEqualKeys(Application a, Application b) {
+    switch (this) {
+      case NAME:
+        return b.getName().compareTo(a.getName());
+      case EMAIL:
+        return b.getEmail().compareTo(a.getEmail());
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Returns the sequence number stored in the given rank key by TieBreak.ARRIVAL
+   *
+   * @param key a rank key computed by TieBreak.ARRIVAL
+   * @return its sequence number
+   */
+  static long sequenceOf(long key) {
+    return TIE_MASK - (key & TIE_MASK);
+  }
+
+  /**
+   * Returns the score stored in the given rank key
+   *
+   * @param key a rank key
+   * @return its score
+   */
+  public static int scoreOf(long key) {
+    return (int) (key >>> SCORE_SHIFT);
+  }
+
+  /**
+   * Packs the first characters of the given String, one byte each, so that comparing the packed
+   * values is consistent with String.compareTo(). Characters which do not fit in a byte end the
+   * packed prefix, so that Strings which only differ after one of them get the same prefix.
+   *
+   * @param s the String to pack
+   * @return the packed prefix, on the 56 low bits of a long
+   */
+  private static long prefix(String s) {
+    long prefix = 0;
+    int i = 0;
+    for (; i < PREFIX_CHARS && i < s.length(); i++) {
+      char c = s.charAt(i);
+      prefix = (prefix << 8) | Math.min(c, 0xFF);
+      if (c >= 0xFF) {
+        i++;
+        break;
+      }
+    }
+    return prefix << (8 * (PREFIX_CHARS - i));
+  }
+}
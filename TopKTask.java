@@ -0,0 +1,85 @@
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork/join task selecting the best Applications of a range of an array. Ranges larger than the
+ * leaf size are split in two halves, which are selected in parallel and then merged; smaller
+ * ranges are selected sequentially with their own ApplicationQueue.
+ *
+ * The rank key of an Application is computed from its index in the array, as if the Applications
+ * of the array were added one by one in order. Merging two queues keeps the rank keys, so the
+ * result does not depend on how the array was split, as long as the tie-break orders every two
+ * Applications: which of several tied Applications is selected depends on the heap layouts.
+ */
+class TopKTask extends RecursiveTask<ApplicationQueue> {
+  private static final long serialVersionUID = 1L;
+
+  private final Application[] batch; // the array holding the Applications to select from
+  private final int from; // index of the first Application of the range
+  private final int to; // index after the last Application of the range
+  private final int capacity; // number of Applications to select
+  private final TieBreak tieBreak; // how Applications with the same score are ordered
+  private final int cutoff; // Applications with a lower score are ignored
+  private final int leafSize; // largest range selected sequentially
+
+  /**
+   * Creates a new task selecting the best Applications of the given range
+   *
+   * @param batch    the array holding the Applications to select from
+   * @param from     index of the first Application of the range
+   * @param to       index after the last Application of the range
+   * @param capacity number of Applications to select
+   * @param tieBreak how Applications with the same score are ordered
+   * @param cutoff   Applications with a lower score are ignored
+   * @param leafSize largest range selected sequentially
+   */
+  TopKTask(Application[] batch, int from, int to, int capacity, TieBreak tieBreak, int cutoff,
+      int leafSize) {
+    this.batch = batch;
+    this.from = from;
+    this.to = to;
+    this.capacity = capacity;
+    this.tieBreak = tieBreak;
+    this.cutoff = cutoff;
+    this.leafSize = leafSize;
+  }
+
+  /**
+   * Selects the best Applications of the range of this task
+   *
+   * @return an ApplicationQueue holding the best Applications of the range
+   * @throws NullPointerException if any of the Applications of the range is null
+   */
+  @Override
+  protected ApplicationQueue compute() throws NullPointerException {
+    if (to - from <= leafSize) {
+      ApplicationQueue queue = new ApplicationQueue(capacity, tieBreak);
+      for (int i = from; i < to; i++) {
+        if (batch[i] == null) {
+          throw new NullPointerException("application is null");
+        }
+        if (batch[i].getScore() >= cutoff) {
+          queue.offerKeyed(batch[i], tieBreak.key(batch[i], i));
+        }
+      }
+      return queue;
+    }
+
+    int middle = (from + to) >>> 1;
+    TopKTask left = new TopKTask(batch, from, middle, capacity, tieBreak, cutoff, leafSize);
+    left.fork();
+    ApplicationQueue right =
+        new TopKTask(batch, middle, to, capacity, tieBreak, cutoff, leafSize).compute();
+    ApplicationQueue merged = left.join();
+
+    // merge the smaller queue into the larger one
+    if (merged.size() < right.size()) {
+      ApplicationQueue temp = merged;
+      merged = right;
+      right = temp;
+    }
+    for (int i = 0; i < right.size(); i++) {
+      merged.offerKeyed(right.elementAt(i), right.keyAt(i));
+    }
+    return merged;
+  }
+}
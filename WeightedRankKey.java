@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * A RankKey ranking Applications by a weighted sum of features, e.g. a skills match, the recency
+ * of the Application, or the distance to the position. Among Applications with the same weighted
+ * sum, the one added first has the higher priority.
+ *
+ * The weighted sum is rounded to a float, whose bits are stored in the high half of the rank key
+ * in an order-preserving way, and the arrival sequence is stored in the low half. Computing the
+ * keys of a batch evaluates each feature over the whole batch into a primitive column, then sums
+ * the columns, so that the inner loops only work on double arrays.
+ */
+public class WeightedRankKey implements RankKey {
+  /**
+   * The score of an Application, scaled to the 0 .. 1 range
+   */
+  public static final Feature SCORE = a -> (double) a.getScore() / Application.MAX_SCORE;
+
+  private static final long SEQUENCE_MASK = 0xFFFFFFFFL; // bits of the arrival sequence
+
+  private final Feature[] features;
+  private final double[] weights; // weights[f] is the weight of features[f]
+
+  /**
+   * A numeric property of an Application which contributes to its rank
+   */
+  @FunctionalInterface
+  public interface Feature {
+    /**
+     * Returns the value of this feature for the given Application
+     *
+     * @param a the Application to evaluate
+     * @return the value of this feature, which must not be NaN
+     */
+    public double value(Application a);
+
+    /**
+     * Evaluates this feature over the Applications from index from (inclusive) to index to
+     * (exclusive) of the given array. Features which can be computed faster over a batch, e.g.
+     * from columns of precomputed data, should override this method.
+     *
+     * @param batch  the array holding the Applications to evaluate
+     * @param from   index of the first Application to evaluate
+     * @param to     index after the last Application to evaluate
+     * @param values receives the value of batch[i] at index i - from
+     */
+    public default void values(Application[] batch, int from, int to, double[] values) {
+      for (int i = from; i < to; i++) {
+        values[i - from] = value(batch[i]);
+      }
+    }
+  }
+
+  /**
+   * Creates a new WeightedRankKey from the given features and weights
+   *
+   * @param features the features contributing to the rank of an Application
+   * @param weights  the weight of each feature, in the same order
+   * @throws NullPointerException     if the arrays or any of the features are null
+   * @throws IllegalArgumentException with a descriptive error message if there is no feature, the
+   *                                  arrays do not have the same length, or a weight is not finite
+   */
+  public WeightedRankKey(Feature[] features, double[] weights)
+      throws NullPointerException, IllegalArgumentException {
+    if (features.length == 0 || features.length != weights.length) {
+      throw new IllegalArgumentException("invalid features");
+    }
+    for (int f = 0; f < features.length; f++) {
+      if (features[f] == null) {
+        throw new NullPointerException("feature is null");
+      }
+      if (!Double.isFinite(weights[f])) {
+        throw new IllegalArgumentException("invalid weight");
+      }
+    }
+    this.features = Arrays.copyOf(features, features.length);
+    this.weights = Arrays.copyOf(weights, weights.length);
+  }
+
+  /**
+   * Returns the weighted sum of the features of the given Application
+   *
+   * @param a the Application to evaluate
+   * @return its weighted sum
+   */
+  public double rank(Application a) {
+    double rank = 0;
+    for (int f = 0; f < features.length; f++) {
+      rank += weights[f] * features[f].value(a);
+    }
+    return rank;
+  }
+
+  @Override
+  public long key(Application a, long sequence) {
+    return key(rank(a), sequence);
+  }
+
+  @Override
+  public void keys(Application[] batch, int from, int to, long sequence, long[] keys) {
+    int length = to - from;
+    double[] ranks = new double[length];
+    double[] values = new double[length];
+    for (int f = 0; f < features.length; f++) {
+      features[f].values(batch, from, to, values);
+      double weight = weights[f];
+      for (int i = 0; i < length; i++) {
+        ranks[i] += weight * values[i];
+      }
+    }
+    for (int i = 0; i < length; i++) {
+      keys[i] = key(ranks[i], sequence + i);
+    }
+  }
+
+  /**
+   * Packs the given weighted sum and arrival sequence into a rank key
+   *
+   * @param rank     the weighted sum of the features of an Application
+   * @param sequence number of Applications added to the queue before this one
+   * @return the rank key of the Application
+   */
+  private static long key(double rank, long sequence) {
+    int bits = Float.floatToIntBits((float) rank + 0.0f); // -0.0 and 0.0 get the same bits
+    // negative floats are ordered backwards as ints, so their magnitude bits are flipped
+    bits ^= (bits >> 31) & 0x7FFFFFFF;
+    return ((long) bits << 32) | (SEQUENCE_MASK - (sequence & SEQUENCE_MASK));
+  }
+}
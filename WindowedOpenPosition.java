@@ -0,0 +1,274 @@
+import java.util.NoSuchElementException;
+
+/**
+ * An open position which ranks Applications over a sliding time window: each Application is added
+ * with its arrival timestamp, and only counts while it is younger than the window. The position
+ * keeps the exact best Applications among the unexpired ones, as OpenPosition does among all of
+ * them. Among Applications with the same score, the most recent one has the higher priority,
+ * since it is also the one which expires last.
+ *
+ * An Application can be discarded as soon as capacity Applications with a higher or equal score
+ * arrived after it: they outrank it for as long as it is in the window. So the position keeps, for
+ * each score, a ring of at most capacity Applications in arrival order. A new Application pushes
+ * the oldest one of its ring out once the ring is full, and expired Applications are dropped from
+ * the front of the rings when the clock advances, so that each Application is added and removed
+ * once, in constant time. The statistics walk the 101 rings, whatever the number of Applications.
+ */
+public class WindowedOpenPosition {
+  private static final int INITIAL_LENGTH = 16; // length of a ring when created
+
+  private String positionName;
+  private int capacity; // the number of vacancies
+  private long window; // how long an Application stays in the position
+  private long now; // current time, i.e. the latest timestamp seen
+  private long oldest; // no Application in the rings arrived before this time
+  private Application[][] rings; // rings[score] holds Applications with this score, oldest first
+  private long[][] timestamps; // timestamps[score][i] is the arrival time of rings[score][i]
+  private int[] heads; // heads[score] is the index of the oldest Application of rings[score]
+  private int[] counts; // counts[score] is the number of Applications in rings[score]
+
+  /**
+   * Creates a new windowed position with the given capacity and window
+   *
+   * @param positionName the name of this position
+   * @param capacity     the number of vacancies of this position
+   * @param window       how long an Application stays in this position after its arrival, in the
+   *                     unit of the timestamps
+   * @throws IllegalArgumentException with a descriptive error message if the capacity or the
+   *                                  window is not a positive integer
+   */
+  public WindowedOpenPosition(String positionName, int capacity, long window)
+      throws IllegalArgumentException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("invalid capacity");
+    }
+    if (window <= 0) {
+      throw new IllegalArgumentException("invalid window");
+    }
+    this.positionName = positionName;
+    this.capacity = capacity;
+    this.window = window;
+    this.now = Long.MIN_VALUE;
+    this.oldest = Long.MAX_VALUE;
+    rings = new Application[Application.MAX_SCORE + 1][];
+    timestamps = new long[Application.MAX_SCORE + 1][];
+    heads = new int[Application.MAX_SCORE + 1];
+    counts = new int[Application.MAX_SCORE + 1];
+  }
+
+  public String getPositionName() {
+    return this.positionName;
+  }
+
+  /**
+   * Adds the given Application, which arrived at the given time, and expires the Applications
+   * which are out of the window at this time.
+   *
+   * @param application the Application to add
+   * @param timestamp   its arrival time, not earlier than the previous ones
+   * @return whether the Application is among the best ones of this position
+   * @throws NullPointerException     if the Application is null
+   * @throws IllegalArgumentException with a descriptive error message if the timestamp is earlier
+   *                                  than a previous one
+   */
+  public boolean add(Application application, long timestamp)
+      throws NullPointerException, IllegalArgumentException {
+    if (application == null) {
+      throw new NullPointerException("application is null");
+    }
+    advance(timestamp);
+    int score = application.getScore();
+    if (rings[score] == null) {
+      rings[score] = new Application[Math.min(INITIAL_LENGTH, capacity)];
+      timestamps[score] = new long[rings[score].length];
+    } else if (counts[score] == rings[score].length && counts[score] < capacity) {
+      grow(score);
+    }
+    int length = rings[score].length;
+    if (counts[score] == capacity) {
+      // the oldest Application with this score is outranked by capacity newer ones
+      heads[score] = (heads[score] + 1) % length;
+      counts[score]--;
+    }
+    int tail = (heads[score] + counts[score]) % length;
+    rings[score][tail] = application;
+    timestamps[score][tail] = timestamp;
+    counts[score]++;
+    oldest = Math.min(oldest, timestamp);
+
+    // the new Application outranks every other one with the same score
+    int higher = 0;
+    for (int s = score + 1; s <= Application.MAX_SCORE && higher < capacity; s++) {
+      higher += counts[s];
+    }
+    return higher < capacity;
+  }
+
+  /**
+   * Moves the clock of this position to the given time, and expires the Applications which
+   * arrived a window or more before it.
+   *
+   * @param time the current time, not earlier than the previous one
+   * @throws IllegalArgumentException with a descriptive error message if the time is earlier than
+   *                                  a previous one
+   */
+  public void advance(long time) throws IllegalArgumentException {
+    if (time < now) {
+      throw new IllegalArgumentException("timestamp out of order");
+    }
+    now = time;
+    long expiry = time - window; // Applications which arrived at or before expiry are out
+    if (oldest > expiry) {
+      return; // nothing to expire
+    }
+    oldest = Long.MAX_VALUE;
+    for (int score = 0; score <= Application.MAX_SCORE; score++) {
+      int length = counts[score] == 0 ? 0 : rings[score].length;
+      while (counts[score] > 0 && timestamps[score][heads[score]] <= expiry) {
+        rings[score][heads[score]] = null;
+        heads[score] = (heads[score] + 1) % length;
+        counts[score]--;
+      }
+      if (counts[score] > 0) {
+        oldest = Math.min(oldest, timestamps[score][heads[score]]);
+      }
+    }
+  }
+
+  /**
+   * Doubles the length of the ring of the given score, up to the capacity of this position
+   *
+   * @param score the score of the ring to grow
+   */
+  private void grow(int score) {
+    int length = rings[score].length;
+    int grownLength = (int) Math.min((long) length * 2, capacity);
+    Application[] grown = new Application[grownLength];
+    long[] grownTimestamps = new long[grownLength];
+    for (int i = 0; i < counts[score]; i++) {
+      grown[i] = rings[score][(heads[score] + i) % length];
+      grownTimestamps[i] = timestamps[score][(heads[score] + i) % length];
+    }
+    rings[score] = grown;
+    timestamps[score] = grownTimestamps;
+    heads[score] = 0;
+  }
+
+  /**
+   * Returns the number of Applications of the given score among the best ones of this position
+   *
+   * @param score     a score
+   * @param remaining number of vacancies left for this score and the lower ones
+   * @return the number of Applications of this score kept by this position
+   */
+  private int taken(int score, int remaining) {
+    return Math.min(counts[score], remaining);
+  }
+
+  /**
+   * Returns the list of the best unexpired Applications.
+   *
+   * @return The list of the best unexpired Applications, one per line, in increasing order of the
+   *         scores, and from the oldest to the most recent one among the same score.
+   */
+  public String getApplications() {
+    int[] taken = new int[Application.MAX_SCORE + 1];
+    int remaining = capacity;
+    for (int score = Application.MAX_SCORE; score >= 0 && remaining > 0; score--) {
+      taken[score] = taken(score, remaining);
+      remaining -= taken[score];
+    }
+    StringBuilder val = new StringBuilder();
+    for (int score = 0; score <= Application.MAX_SCORE; score++) {
+      // only the most recent Applications of a score are kept
+      for (int i = counts[score] - taken[score]; i < counts[score]; i++) {
+        val.append(rings[score][(heads[score] + i) % rings[score].length]).append("\n");
+      }
+    }
+    return val.toString();
+  }
+
+  /**
+   * Returns the number of best unexpired Applications.
+   *
+   * @return The number of best unexpired Applications, at most the capacity of this position.
+   */
+  public int getApplicationCount() {
+    int count = 0;
+    for (int score = Application.MAX_SCORE; score >= 0 && count < capacity; score--) {
+      count += taken(score, capacity - count);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the total score of the best unexpired Applications.
+   *
+   * @return The total score of the best unexpired Applications.
+   */
+  public int getTotalScore() {
+    int count = 0;
+    int total = 0;
+    for (int score = Application.MAX_SCORE; score >= 0 && count < capacity; score--) {
+      int taken = taken(score, capacity - count);
+      count += taken;
+      total += taken * score;
+    }
+    return total;
+  }
+
+  /**
+   * Returns the score a new Application must reach to be among the best unexpired ones. Since a
+   * new Application outranks the older ones with the same score, this is the lowest score of the
+   * best Applications once every vacancy is filled.
+   *
+   * @return The lowest score of the best unexpired Applications if every vacancy is filled, or -1
+   *         if there are still vacancies.
+   */
+  public int getCutoffScore() {
+    int count = 0;
+    for (int score = Application.MAX_SCORE; score >= 0; score--) {
+      count += counts[score];
+      if (count >= capacity) {
+        return score;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the lowest score of the best unexpired Applications.
+   *
+   * @return The lowest score of the best unexpired Applications.
+   * @throws NoSuchElementException if there is no unexpired Application
+   */
+  public int getMinScore() throws NoSuchElementException {
+    int count = 0;
+    int min = -1;
+    for (int score = Application.MAX_SCORE; score >= 0 && count < capacity; score--) {
+      if (counts[score] > 0) {
+        count += counts[score];
+        min = score;
+      }
+    }
+    if (min < 0) {
+      throw new NoSuchElementException("no applications");
+    }
+    return min;
+  }
+
+  /**
+   * Returns the highest score of the unexpired Applications.
+   *
+   * @return The highest score of the unexpired Applications.
+   * @throws NoSuchElementException if there is no unexpired Application
+   */
+  public int getMaxScore() throws NoSuchElementException {
+    for (int score = Application.MAX_SCORE; score >= 0; score--) {
+      if (counts[score] > 0) {
+        return score;
+      }
+    }
+    throw new NoSuchElementException("no applications");
+  }
+}